@@ -0,0 +1,104 @@
+package center.buran.jcollections.combiners.jmh;
+
+import center.buran.jcollections.combiners.AlphaCombiner;
+import center.buran.jcollections.combiners.BetaCombiner;
+import center.buran.jcollections.combiners.ranges.Range;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки свёртки и развёртки наборов комбинаций AlphaCombiner и BetaCombiner
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AlphaBetaCombinerBenchmark {
+    /**
+     * Кол-во шагов главного диапазона
+     */
+    @Param({"2", "4", "6"})
+    public int stepCnt;
+    /**
+     * Альфа комбайнер
+     */
+    private AlphaCombiner alphaCombiner;
+    /**
+     * Бета комбайнер
+     */
+    private BetaCombiner betaCombiner;
+    /**
+     * Номер набора альфа комбайнера
+     */
+    private BigInteger alphaValue;
+    /**
+     * Номер набора бета комбайнера
+     */
+    private BigInteger betaValue;
+    /**
+     * Набор альфа комбайнера
+     */
+    private List<List<?>> alphaSet;
+    /**
+     * Набор бета комбайнера
+     */
+    private List<List<?>> betaSet;
+
+    /**
+     * Создать комбайнеры
+     */
+    @Setup
+    public void setUp() {
+        alphaCombiner = new AlphaCombiner(Range.of(0, stepCnt), Range.of(0, stepCnt));
+        alphaValue = alphaCombiner.getCombinationCnt().shiftRight(1);
+        alphaSet = alphaCombiner.alphaDeconv(alphaValue);
+        betaCombiner = new BetaCombiner(Range.of(0, stepCnt, true), Range.of(0, 3, true));
+        betaValue = betaCombiner.getCombinationCnt().shiftRight(1);
+        betaSet = betaCombiner.betaDeconv(betaValue);
+    }
+
+    /**
+     * Развёртка набора альфа комбайнера
+     *
+     * @return набор комбинаций
+     */
+    @Benchmark
+    public List<List<?>> alphaDeconv() {
+        return alphaCombiner.alphaDeconv(alphaValue);
+    }
+
+    /**
+     * Свёртка набора альфа комбайнера
+     *
+     * @return номер набора
+     */
+    @Benchmark
+    public BigInteger alphaConv() {
+        return alphaCombiner.alphaConv(alphaSet);
+    }
+
+    /**
+     * Развёртка набора бета комбайнера
+     *
+     * @return набор комбинаций
+     */
+    @Benchmark
+    public List<List<?>> betaDeconv() {
+        return betaCombiner.betaDeconv(betaValue);
+    }
+
+    /**
+     * Свёртка набора бета комбайнера
+     *
+     * @return номер набора
+     */
+    @Benchmark
+    public BigInteger betaConv() {
+        return betaCombiner.betaConv(betaSet);
+    }
+}
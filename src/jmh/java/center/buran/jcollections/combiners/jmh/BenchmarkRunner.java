@@ -0,0 +1,34 @@
+package center.buran.jcollections.combiners.jmh;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Запуск всех бенчмарков комбайнеров с профилировщиком сборщика мусора
+ * (из IDE; из Maven: mvn -Pjmh package exec:exec)
+ */
+public class BenchmarkRunner {
+    /**
+     * Запустить бенчмарки
+     *
+     * @param args регулярное выражение имён бенчмарков (по умолчанию все бенчмарки пакета)
+     * @throws RunnerException ошибка запуска
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : BenchmarkRunner.class.getPackageName() + ".*")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+    /**
+     * Конструктор для запрета создания объектов
+     */
+    private BenchmarkRunner() {
+        // Подавление создания конструктора по умолчанию
+    }
+}
@@ -0,0 +1,91 @@
+package center.buran.jcollections.combiners.jmh;
+
+import center.buran.jcollections.combiners.Combiner;
+import center.buran.jcollections.combiners.ranges.Range;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки свёртки, развёртки и последовательного перебора комбайнера
+ * в зависимости от кол-ва диапазонов и кол-ва шагов в них
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CombinerBenchmark {
+    /**
+     * Кол-во диапазонов
+     */
+    @Param({"2", "8", "32"})
+    public int rangeCnt;
+    /**
+     * Кол-во шагов в каждом диапазоне
+     */
+    @Param({"10", "1000"})
+    public int stepCnt;
+    /**
+     * Комбайнер
+     */
+    private Combiner combiner;
+    /**
+     * Номер развёртываемой комбинации
+     */
+    private BigInteger combinationNumber;
+    /**
+     * Свёртываемая комбинация
+     */
+    private List<Object> combination;
+
+    /**
+     * Создать комбайнер
+     */
+    @Setup
+    public void setUp() {
+        combiner = new Combiner(rangeCnt);
+        for (int i = 0; i < rangeCnt; i++)
+            combiner.setRange(i, Range.of(0, stepCnt));
+        combinationNumber = combiner.getCombinationCnt().shiftRight(1);
+        combination = combiner.deconv(combinationNumber);
+    }
+
+    /**
+     * Развёртка комбинации по номеру
+     *
+     * @return комбинация
+     */
+    @Benchmark
+    public List<Object> deconv() {
+        return combiner.deconv(combinationNumber);
+    }
+
+    /**
+     * Свёртка комбинации в номер
+     *
+     * @return номер комбинации
+     */
+    @Benchmark
+    public BigInteger conv() {
+        return combiner.conv(combination);
+    }
+
+    /**
+     * Получение следующей комбинации перебора
+     *
+     * @return комбинация
+     */
+    @Benchmark
+    public List<Object> getNextAsList() {
+        List<Object> next = combiner.getNextAsList();
+        if (next.isEmpty()) {
+            combiner.setCombinationLoopPos(BigInteger.ZERO);
+            next = combiner.getNextAsList();
+        }
+        return next;
+    }
+}
@@ -0,0 +1,122 @@
+package center.buran.jcollections.combiners.jmh;
+
+import center.buran.jcollections.combiners.FixedSizeCombiner;
+import center.buran.jcollections.combiners.ForEachCombiner;
+import center.buran.jcollections.combiners.GammaCombiner;
+import center.buran.jcollections.combiners.ranges.Range;
+import center.buran.jcollections.combiners.ranges.primitive.IntRange;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки построения таблиц и свёртки/развёртки наборов GammaCombiner,
+ * FixedSizeCombiner и ForEachCombiner. Таблицы строятся перебором всех подмножеств комбинаций,
+ * поэтому размеры задаются формой "кол-во диапазонов x кол-во шагов" и растут осторожно
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GammaCombinerBenchmark {
+    /**
+     * Форма диапазонов: кол-во диапазонов x кол-во шагов в каждом
+     */
+    @Param({"2x1", "3x1", "2x2", "2x3", "4x1"})
+    public String shape;
+    /**
+     * Диапазоны (в последнем значения не повторяются)
+     */
+    private Range[] ranges;
+    /**
+     * Диапазоны ForEachCombiner: в наборе столько комбинаций, сколько диапазонов, кроме главного,
+     * поэтому запрет повторов оставляется, только если значений последнего диапазона на них хватает
+     */
+    private Range[] forEachRanges;
+    /**
+     * Гамма комбайнер
+     */
+    private GammaCombiner gammaCombiner;
+    /**
+     * Номер набора
+     */
+    private BigInteger gammaValue;
+    /**
+     * Набор комбинаций
+     */
+    private List<List<?>> gammaSet;
+
+    /**
+     * Создать диапазоны и комбайнер
+     */
+    @Setup
+    public void setUp() {
+        String[] parts = shape.split("x");
+        int rangeCnt = Integer.parseInt(parts[0]);
+        int stepCnt = Integer.parseInt(parts[1]);
+        ranges = new Range[rangeCnt];
+        for (int i = 0; i < rangeCnt; i++)
+            ranges[i] = new IntRange(0, stepCnt, null, null, true, i != rangeCnt - 1);
+        forEachRanges = new Range[rangeCnt];
+        for (int i = 0; i < rangeCnt; i++)
+            forEachRanges[i] = new IntRange(0, stepCnt, null, null, true,
+                    i != rangeCnt - 1 || stepCnt + 1 < rangeCnt - 1);
+        gammaCombiner = new GammaCombiner(ranges);
+        gammaValue = gammaCombiner.getCombinationCnt().shiftRight(1);
+        gammaSet = gammaCombiner.gammaDeconv(gammaValue);
+    }
+
+    /**
+     * Построение таблицы GammaCombiner
+     *
+     * @return комбайнер
+     */
+    @Benchmark
+    public GammaCombiner gammaTable() {
+        return new GammaCombiner(ranges);
+    }
+
+    /**
+     * Построение таблицы FixedSizeCombiner
+     *
+     * @return комбайнер
+     */
+    @Benchmark
+    public FixedSizeCombiner fixedSizeTable() {
+        return new FixedSizeCombiner(Math.min(2, ranges[ranges.length - 1].getStepCnt() + 1), ranges);
+    }
+
+    /**
+     * Построение таблицы ForEachCombiner (первый диапазон - главный)
+     *
+     * @return комбайнер
+     */
+    @Benchmark
+    public ForEachCombiner forEachTable() {
+        return new ForEachCombiner(forEachRanges);
+    }
+
+    /**
+     * Развёртка набора GammaCombiner
+     *
+     * @return набор комбинаций
+     */
+    @Benchmark
+    public List<List<?>> gammaDeconv() {
+        return gammaCombiner.gammaDeconv(gammaValue);
+    }
+
+    /**
+     * Свёртка набора GammaCombiner
+     *
+     * @return номер набора
+     */
+    @Benchmark
+    public BigInteger gammaConv() {
+        return gammaCombiner.gammaConv(gammaSet);
+    }
+}
@@ -6,7 +6,7 @@ import java.util.Objects;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * Атомарный BigInteger
+ * Атомарный BigInteger. Все операции идут через AtomicReference без блокировок
  */
 public final class AtomicBigInteger {
     /**
@@ -28,7 +28,7 @@ public final class AtomicBigInteger {
      *
      * @return увеличенное на 1 значение
      */
-    public synchronized BigInteger incrementAndGet() {
+    public BigInteger incrementAndGet() {
         for (; ; ) {
             BigInteger current = valueHolder.get();
             BigInteger next = current.add(BigInteger.ONE);
@@ -43,17 +43,26 @@ public final class AtomicBigInteger {
      *
      * @return значение
      */
-    public synchronized BigInteger get() {
+    public BigInteger get() {
         return valueHolder.get();
     }
 
     /**
      * Увеличить текущее значение на 1
      */
-    public synchronized void increment() {
-        BigInteger current = valueHolder.get();
-        BigInteger next = current.add(BigInteger.ONE);
-        valueHolder.set(next);
+    public void increment() {
+        incrementAndGet();
+    }
+
+    /**
+     * Атомарно заменить значение, если текущее значение - это ожидаемый объект
+     *
+     * @param expect ожидаемое текущее значение (сравнивается по ссылке)
+     * @param update новое значение
+     * @return флаг, удалось ли заменить значение
+     */
+    public boolean compareAndSet(BigInteger expect, BigInteger update) {
+        return valueHolder.compareAndSet(expect, update);
     }
 
     /**
@@ -61,7 +70,7 @@ public final class AtomicBigInteger {
      *
      * @param integer новое значение
      */
-    public synchronized void set(BigInteger integer) {
+    public void set(BigInteger integer) {
         valueHolder.set(integer);
     }
 
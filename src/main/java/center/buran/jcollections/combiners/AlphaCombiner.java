@@ -4,9 +4,10 @@ package center.buran.jcollections.combiners;
 import center.buran.jcollections.combiners.ranges.Range;
 
 import java.math.BigInteger;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.stream.Stream;
 
 /**
  * Класс переборщика комбинаций перебирает все наборы комбинаций из двух диапазонов
@@ -58,11 +59,19 @@ public class AlphaCombiner extends Combiner {
      * @return номер комбинации
      */
     public BigInteger alphaConv(List<List<?>> combinationSets) {
-        BigInteger result = BigInteger.ZERO;
-        for (List<?> combination : combinationSets) {
-            int value = simpleConv(combination);
-            result = result.setBit(value);
-        }
+        return alphaConvToSet(combinationSets).toBigInteger();
+    }
+
+    /**
+     * Получить набор комбинаций в виде битового множества их номеров
+     *
+     * @param combinationSets комбинации
+     * @return битовое множество номеров комбинаций
+     */
+    public CombinationSet alphaConvToSet(List<List<?>> combinationSets) {
+        CombinationSet result = new CombinationSet();
+        for (List<?> combination : combinationSets)
+            result.add(simpleConv(combination));
         return result;
     }
 
@@ -73,14 +82,199 @@ public class AlphaCombiner extends Combiner {
      * @return следующая комбинация
      */
     public List<List<?>> alphaDeconv(BigInteger value) {
-        List<List<?>> lst = new LinkedList<>();
-        int bitCnt = value.bitLength();
-        for (int i = 0; i < bitCnt; i++) {
-            if (value.testBit(i)) {
-                lst.add(deconv(BigInteger.valueOf(i)));
+        return alphaDeconv(CombinationSet.fromBigInteger(value));
+    }
+
+    /**
+     * Преобразование битового множества номеров комбинаций в набор комбинаций
+     *
+     * @param combinationSet битовое множество номеров комбинаций
+     * @return набор комбинаций
+     */
+    public List<List<?>> alphaDeconv(CombinationSet combinationSet) {
+        List<List<?>> lst = new ArrayList<>(combinationSet.size());
+        combinationSet.forEach(i -> lst.add(deconv((long) i)));
+        return lst;
+    }
+
+    /**
+     * Узнать номер набора комбинаций в порядке по возрастанию их кол-ва: сначала пустой набор,
+     * потом все наборы из одной комбинации, из двух и т.д. Наборы одного размера нумеруются
+     * по комбинаторной системе счисления, набор из всех комбинаций не перебирается, как и в alphaConv
+     *
+     * @param combinationSet битовое множество номеров комбинаций
+     * @return номер набора, -1, если такого набора нет
+     */
+    public BigInteger cardinalityConv(CombinationSet combinationSet) {
+        int n = simpleConv(getMax());
+        int size = combinationSet.size();
+        if (size >= n || combinationSet.nextCombinationNum(n) >= 0)
+            return BigInteger.valueOf(-1);
+        return getCardinalityStart(size).add(combinadicRank(combinationSet));
+    }
+
+    /**
+     * Узнать номер набора комбинаций в порядке по возрастанию их кол-ва
+     *
+     * @param combinationSets комбинации
+     * @return номер набора, -1, если такого набора нет
+     */
+    public BigInteger cardinalityConv(List<List<?>> combinationSets) {
+        return cardinalityConv(alphaConvToSet(combinationSets));
+    }
+
+    /**
+     * Получить битовое множество номеров комбинаций набора по его номеру в порядке по возрастанию кол-ва комбинаций
+     *
+     * @param value номер набора
+     * @return битовое множество номеров комбинаций
+     */
+    public CombinationSet cardinalityDeconvToSet(BigInteger value) {
+        if (value.signum() < 0 || value.compareTo(combinationCnt) >= 0)
+            throw new AssertionError("cardinalityDeconv(): " + value + " is out of [0, " + combinationCnt + ")");
+        int n = simpleConv(getMax());
+        BigInteger rest = value;
+        int size = 0;
+        // пропускаем наборы меньших размеров
+        for (BigInteger cnt = BigInteger.ONE; rest.compareTo(cnt) >= 0; cnt = binomial(n, ++size))
+            rest = rest.subtract(cnt);
+        return combinadicUnrank(rest, n, size);
+    }
+
+    /**
+     * Преобразование номера набора в порядке по возрастанию кол-ва комбинаций в набор комбинаций
+     *
+     * @param value номер набора
+     * @return набор комбинаций
+     */
+    public List<List<?>> cardinalityDeconv(BigInteger value) {
+        return alphaDeconv(cardinalityDeconvToSet(value));
+    }
+
+    /**
+     * Получить номер первого набора заданного размера в порядке по возрастанию кол-ва комбинаций
+     *
+     * @param size кол-во комбинаций в наборе
+     * @return номер первого набора из size комбинаций
+     */
+    public BigInteger getCardinalityStart(int size) {
+        int n = simpleConv(getMax());
+        BigInteger res = BigInteger.ZERO;
+        for (int k = 0; k < size; k++)
+            res = res.add(binomial(n, k));
+        return res;
+    }
+
+    /**
+     * Получить поток наборов комбинаций в порядке по возрастанию их кол-ва, начиная с заданного номера.
+     * Следующий набор получается из предыдущего без пересчёта номера, поэтому перебор можно прервать
+     * и продолжить с номера первого необработанного набора
+     *
+     * @param from номер первого набора
+     * @return поток битовых множеств номеров комбинаций
+     */
+    public Stream<CombinationSet> cardinalitySetStream(BigInteger from) {
+        if (from.compareTo(combinationCnt) >= 0)
+            return Stream.empty();
+        int n = simpleConv(getMax());
+        int[] first = cardinalityDeconvToSet(from).toArray();
+        return Stream.iterate(first, Objects::nonNull, c -> nextCardinalitySet(c, n))
+                .map(c -> {
+                    CombinationSet combinationSet = new CombinationSet();
+                    for (int combinationNum : c)
+                        combinationSet.add(combinationNum);
+                    return combinationSet;
+                });
+    }
+
+    /**
+     * Получить следующий набор в порядке по возрастанию кол-ва комбинаций
+     *
+     * @param c номера комбинаций набора по возрастанию
+     * @param n кол-во комбинаций
+     * @return номера комбинаций следующего набора, null, если набор последний
+     */
+    private static int[] nextCardinalitySet(int[] c, int n) {
+        for (int i = 0; i < c.length; i++) {
+            // увеличиваем самую младшую комбинацию, которую можно увеличить, а меньшие сдвигаем к началу
+            int limit = i + 1 < c.length ? c[i + 1] : n;
+            if (c[i] + 1 < limit) {
+                int[] res = c.clone();
+                res[i]++;
+                for (int j = 0; j < i; j++)
+                    res[j] = j;
+                return res;
             }
         }
-        return lst;
+        if (c.length + 1 >= n)
+            return null;
+        int[] res = new int[c.length + 1];
+        for (int j = 0; j < res.length; j++)
+            res[j] = j;
+        return res;
+    }
+
+    /**
+     * Посчитать биномиальный коэффициент
+     *
+     * @param n кол-во элементов
+     * @param k кол-во выбираемых элементов
+     * @return кол-во сочетаний из n по k (0, если k &lt; 0 или k &gt; n)
+     */
+    static BigInteger binomial(int n, int k) {
+        if (k < 0 || k > n)
+            return BigInteger.ZERO;
+        k = Math.min(k, n - k);
+        BigInteger res = BigInteger.ONE;
+        for (int i = 1; i <= k; i++)
+            res = res.multiply(BigInteger.valueOf(n - k + i)).divide(BigInteger.valueOf(i));
+        return res;
+    }
+
+    /**
+     * Получить номер набора из фиксированного кол-ва комбинаций среди всех таких наборов
+     * по комбинаторной системе счисления: для номеров комбинаций c1 &lt; c2 &lt; ... &lt; ck
+     * номер равен C(c1, 1) + C(c2, 2) + ... + C(ck, k). Так наборы нумеруются по возрастанию их чисел
+     *
+     * @param combinationSet битовое множество номеров комбинаций
+     * @return номер набора
+     */
+    static BigInteger combinadicRank(CombinationSet combinationSet) {
+        BigInteger res = BigInteger.ZERO;
+        int i = 1;
+        for (int c = combinationSet.nextCombinationNum(0); c >= 0; c = combinationSet.nextCombinationNum(c + 1))
+            res = res.add(binomial(c, i++));
+        return res;
+    }
+
+    /**
+     * Получить набор из фиксированного кол-ва комбинаций по его номеру в комбинаторной системе счисления
+     *
+     * @param rank номер набора
+     * @param n    кол-во комбинаций
+     * @param size кол-во комбинаций в наборе
+     * @return битовое множество номеров комбинаций
+     */
+    static CombinationSet combinadicUnrank(BigInteger rank, int n, int size) {
+        CombinationSet combinationSet = new CombinationSet();
+        BigInteger rest = rank;
+        int hi = n;
+        for (int i = size; i >= 1; i--) {
+            // ищем наибольший номер комбинации c &lt; hi, для которого C(c, i) &lt;= rest
+            int lo = i - 1;
+            int top = hi - 1;
+            while (lo < top) {
+                int mid = (lo + top + 1) >>> 1;
+                if (binomial(mid, i).compareTo(rest) <= 0)
+                    lo = mid;
+                else
+                    top = mid - 1;
+            }
+            combinationSet.add(lo);
+            rest = rest.subtract(binomial(lo, i));
+            hi = lo;
+        }
+        return combinationSet;
     }
 
     /**
@@ -1,7 +1,6 @@
 package center.buran.jcollections.combiners;
 
 
-import center.buran.jcollections.Async;
 import center.buran.jcollections.combiners.ranges.Range;
 
 import java.math.BigInteger;
@@ -11,6 +10,14 @@ import java.util.*;
  * Класс переборщика комбинаций перебирает наборы комбинаций из двух диапазонов
  * Иными словами, комбинации комбинаций. В каждой комбинации первого уровня не может быть одинаковых значений
  * из первого диапазона, а значения из второго диапазона могут повторяться
+ * <p>
+ * Каждое значение главного диапазона в наборе либо отсутствует, либо встречается в паре ровно с одним
+ * номером значения дополнительного диапазона. Поэтому номер набора - это число в системе счисления
+ * с основанием, равным кол-ву значений дополнительного диапазона + 1, разряд i которого равен нулю,
+ * если i-го значения главного диапазона в наборе нет, и номеру значения дополнительного диапазона + 1,
+ * если есть. Номер и набор переводятся друг в друга напрямую, без таблицы. Перебираются первые
+ * stepCnt значений главного диапазона, набор, в котором все они взяты с последним номером значения
+ * дополнительного диапазона, не перебирается
  */
 public class BetaCombiner extends Combiner {
     /**
@@ -18,12 +25,13 @@ public class BetaCombiner extends Combiner {
      */
     private int auxiliaryBitSize;
     /**
-     * Список чисел, соответствующих устраивающим нас наборам комбинаций
-     * Каждое число через последовательность битов определяет подбираемый набор комбинаций.
-     * Каждой комбинации соответствует бит равный одному в этом числе. Номера единичных битов
-     * определяют порядковые номера комбинаций, содержащихся в наборе.
+     * Кол-во перебираемых значений главного диапазона (разрядов номера набора)
      */
-    private List<BigInteger> combinationSetValuesTable;
+    private int mainValueCnt;
+    /**
+     * Основание системы счисления номеров наборов: кол-во значений дополнительного диапазона + 1
+     */
+    private BigInteger radix;
 
     /**
      * Конструктор комбайнера
@@ -39,74 +47,51 @@ public class BetaCombiner extends Combiner {
     }
 
     /**
-     * Рассчитать количество комбинаций
+     * Рассчитать количество комбинаций: radix^mainValueCnt - 1
      */
     @Override
     protected void calculateCombinationCnt() {
         // рассчитываем кол-во бит, которое занимает максимальный порядковый номерзначения из дополнительного диапазона
         auxiliaryBitSize = Integer.highestOneBit(ranges.get(1).getStepCnt());
-        // создаём список чисел, соответствующих наборам комбинаций
-        List<BigInteger> newCombinationSetValuesList = Collections.synchronizedList(new LinkedList<>());
-        // максимальное число, которое надо проверить, подходит ли соответствующий ему набор комбинаций требованиям
-        // комбайнера(первое - уникальное, воторое можетповторяться)
-        BigInteger maxLoopValue = BigInteger.ONE
-                .shiftLeft(ranges.get(0).getStepCnt() * (auxiliaryBitSize + 1))
-                .subtract(BigInteger.ONE);
-        // перебираем числа
-        //System.out.println(auxiliaryBitSize+"  "+ranges.get(0).getStepCnt()+" "+maxLoopValue);
-        Async.parallelForEach(maxLoopValue, (i) -> {
-            boolean flgAdd = true;
-            // перебираем биты числа
-            for (int j = 0; j < i.bitLength(); j++) {
-                // бит, отвечающий за число из первого диапазона
-                int curPos = j * (auxiliaryBitSize + 1);
-                // если этот бит равен нулю
-                if (!i.testBit(curPos)) {
-                    // и хотя бы один из битов, задающий номер значения из второго
-                    // интервала равен единице, то такое число не может соответствовать одной из нужных нам комбинаций
-                    for (int k = 0; k < auxiliaryBitSize; k++) {
-                        if (i.testBit(curPos + auxiliaryBitSize - k)) {
-                            flgAdd = false;
-                        }
-                    }
-                }
-            }
-            if (flgAdd) {
-                synchronized (newCombinationSetValuesList) {
-                    newCombinationSetValuesList.add(i);
-                }
-            }
-        });
-        combinationSetValuesTable = new ArrayList<>(newCombinationSetValuesList);
-        combinationCnt = BigInteger.valueOf(combinationSetValuesTable.size());
+        mainValueCnt = ranges.get(0).getStepCnt();
+        radix = BigInteger.valueOf(ranges.get(1).getStepCnt() + 2);
+        combinationCnt = radix.pow(mainValueCnt).subtract(BigInteger.ONE);
     }
 
     /**
      * Узнать номер набора комбинаций по его значению
      *
      * @param combinationSets комбинации
-     * @return номер комбинации
+     * @return номер комбинации, -1, если такого набора нет
      */
     public BigInteger betaConv(List<List<?>> combinationSets) {
-        BigInteger result = BigInteger.ZERO;
+        Range mainRange = ranges.get(0);
+        Range auxiliaryRange = ranges.get(1);
+        BigInteger[] digits = new BigInteger[mainValueCnt];
         for (List<?> combination : combinationSets) {
             Iterator<?> it = combination.iterator();
             // получаем номер первого значения в комбинации
-            int num1 = ranges.get(0).getStepNum(it.next());
-            // выставляем в числе соответсвтующий бит
-            result = result.setBit((auxiliaryBitSize + 1) * num1);
+            Object mainValue = it.next();
+            int num1 = mainRange.getStepNum(mainValue);
+            if (num1 < 0 || num1 >= mainValueCnt || digits[num1] != null ||
+                    !mainRange.getValue(num1).equals(mainValue))
+                return BigInteger.valueOf(-1);
             // получаем номер второго значения в комбинации
-            int num2 = ranges.get(1).getStepNum(it.next());
-            // задаёт auxiliaryBitSize последующих битов
-            // двоичным представлением этого числа
-            for (int j = 0; j < auxiliaryBitSize; j++) {
-                if (num2 % 2 == 1)
-                    result = result.setBit((auxiliaryBitSize + 1) * num1 + j + 1);
-                num2 = num2 / 2;
-            }
+            Object auxiliaryValue = it.next();
+            int num2 = auxiliaryRange.getStepNum(auxiliaryValue);
+            if (num2 < 0 || num2 > auxiliaryRange.getStepCnt() || !auxiliaryRange.getValue(num2).equals(auxiliaryValue))
+                return BigInteger.valueOf(-1);
+            digits[num1] = BigInteger.valueOf(num2 + 1);
+        }
+        // собираем число со старшего разряда
+        BigInteger result = BigInteger.ZERO;
+        for (int i = mainValueCnt - 1; i >= 0; i--) {
+            result = result.multiply(radix);
+            if (digits[i] != null)
+                result = result.add(digits[i]);
         }
-        // получаем номер набора в списке номеров наборов
-        return BigInteger.valueOf(combinationSetValuesTable.indexOf(result));
+        // набор, в котором все значения взяты с последним значением дополнительного диапазона, не перебирается
+        return result.compareTo(combinationCnt) < 0 ? result : BigInteger.valueOf(-1);
     }
 
     /**
@@ -116,31 +101,23 @@ public class BetaCombiner extends Combiner {
      * @return следующая комбинация
      */
     public List<List<?>> betaDeconv(BigInteger value) {
+        if (value.signum() < 0 || value.compareTo(combinationCnt) >= 0)
+            throw new AssertionError("betaDeconv(): value " + value + " is out of [0, " + combinationCnt + ")");
         List<List<?>> lst = new LinkedList<>();
-        // получаем число, соответствующее нужнойнам комбинации
-        BigInteger realValue = combinationSetValuesTable.get(value.intValue());
-        // перебираем номера всех битов,которые отвечают за значения первого диапазона
-        int bitCnt = realValue.bitLength();
-        for (int i = 0; i <= bitCnt / (auxiliaryBitSize + 1); i++) {
-            //получаем номер бита
-            int curPos = i * (auxiliaryBitSize + 1);
-            // если бит равен единице, значит есть комбинация с этим числом
-            if (realValue.testBit(curPos)) {
+        // перебираем разряды числа, каждый отвечает за значение первого диапазона
+        for (int i = 0; value.signum() > 0; i++) {
+            BigInteger[] qr = value.divideAndRemainder(radix);
+            value = qr[0];
+            int digit = qr[1].intValue();
+            // если разряд не равен нулю, значит есть комбинация с этим значением
+            if (digit != 0) {
                 LinkedList<Object> combination = new LinkedList<>();
                 combination.add(ranges.get(0).getValue(i));
-                // из остальных битов формируем номерзначения из второго диапазона
-                int auxValue = 0;
-                for (int j = 0; j < auxiliaryBitSize; j++) {
-                    auxValue = auxValue * 2;
-                    if (realValue.testBit(curPos + auxiliaryBitSize - j)) {
-                        auxValue++;
-                    }
-                }
-                combination.add(ranges.get(1).getValue(auxValue));
+                combination.add(ranges.get(1).getValue(digit - 1));
                 lst.add(combination);
             }
         }
-        return new LinkedList<>(lst);
+        return lst;
     }
 
     /**
@@ -180,15 +157,13 @@ public class BetaCombiner extends Combiner {
 
         BetaCombiner that = (BetaCombiner) o;
 
-        if (auxiliaryBitSize != that.auxiliaryBitSize) return false;
-        return Objects.equals(combinationSetValuesTable, that.combinationSetValuesTable);
+        return auxiliaryBitSize == that.auxiliaryBitSize;
     }
 
     @Override
     public int hashCode() {
         int result = super.hashCode();
         result = 31 * result + auxiliaryBitSize;
-        result = 31 * result + combinationSetValuesTable.hashCode();
         return result;
     }
 }
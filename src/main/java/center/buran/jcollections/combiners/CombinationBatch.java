@@ -0,0 +1,245 @@
+package center.buran.jcollections.combiners;
+
+import center.buran.jcollections.combiners.ranges.Range;
+import center.buran.jcollections.combiners.ranges.primitive.*;
+import center.buran.jcollections.combiners.ranges.vector.Vector2iRange;
+import center.buran.jcollections.combiners.ranges.vector.Vector3dRange;
+import center.buran.jmath.vector.Vector2i;
+import center.buran.jmath.vector.Vector3d;
+
+import java.math.BigInteger;
+import java.util.Objects;
+
+/**
+ * Пакет подряд идущих комбинаций, развёрнутых по столбцам: для каждого диапазона хранится массив
+ * его значений во всех комбинациях пакета. Для диапазонов int, long, char, float и double это
+ * массивы примитивов, для векторных диапазонов - плоские массивы координат
+ * (x0, y0, x1, y1, ... для {@link Vector2iRange} и x0, y0, z0, x1, ... для {@link Vector3dRange}),
+ * для остальных диапазонов - массивы объектов (null для пустых диапазонов)
+ */
+public class CombinationBatch {
+    /**
+     * Номер первой комбинации пакета
+     */
+    private final BigInteger start;
+    /**
+     * Кол-во комбинаций в пакете
+     */
+    private final int size;
+    /**
+     * Столбцы значений диапазонов
+     */
+    private final Object[] columns;
+    /**
+     * Флаги, хранит ли столбец координаты векторов
+     */
+    private final boolean[] vectorColumns;
+
+    /**
+     * Конструктор пакета: развернуть комбинации курсором
+     *
+     * @param combiner комбайнер
+     * @param start    номер первой комбинации
+     * @param count    кол-во комбинаций (ограничивается кол-вом оставшихся комбинаций)
+     */
+    public CombinationBatch(Combiner combiner, BigInteger start, int count) {
+        Objects.requireNonNull(combiner);
+        if (count < 0)
+            throw new AssertionError("count " + count + " is negative");
+        this.start = Objects.requireNonNull(start);
+        CombinationCursor cursor = combiner.cursor(start, BigInteger.valueOf(count));
+        BigInteger left = combiner.getCombinationCnt().subtract(start);
+        this.size = left.signum() <= 0 ? 0 : left.min(BigInteger.valueOf(count)).intValue();
+        int rangeCnt = cursor.getRangeCnt();
+        columns = new Object[rangeCnt];
+        vectorColumns = new boolean[rangeCnt];
+        for (int i = 0; i < rangeCnt; i++) {
+            Range range = combiner.getRanges().get(i);
+            columns[i] = createColumn(range);
+            vectorColumns[i] = range instanceof Vector2iRange || range instanceof Vector3dRange;
+        }
+        for (int row = 0; cursor.next(); row++) {
+            for (int i = 0; i < rangeCnt; i++)
+                fill(cursor, i, row);
+        }
+    }
+
+    /**
+     * Создать столбец под значения диапазона
+     *
+     * @param range диапазон
+     * @return массив под значения диапазона
+     */
+    private Object createColumn(Range range) {
+        if (range instanceof IntRange)
+            return new int[size];
+        if (range instanceof LongRange)
+            return new long[size];
+        if (range instanceof CharRange)
+            return new char[size];
+        if (range instanceof FloatRange)
+            return new float[size];
+        if (range instanceof DoubleRange)
+            return new double[size];
+        if (range instanceof Vector2iRange)
+            return new int[2 * size];
+        if (range instanceof Vector3dRange)
+            return new double[3 * size];
+        return new Object[size];
+    }
+
+    /**
+     * Записать значение диапазона текущей комбинации курсора в столбец
+     *
+     * @param cursor   курсор
+     * @param rangeIdx номер диапазона
+     * @param row      номер комбинации в пакете
+     */
+    private void fill(CombinationCursor cursor, int rangeIdx, int row) {
+        Object column = columns[rangeIdx];
+        if (column instanceof Object[]) {
+            ((Object[]) column)[row] = cursor.getObject(rangeIdx);
+        } else if (column instanceof long[]) {
+            ((long[]) column)[row] = cursor.getLong(rangeIdx);
+        } else if (column instanceof char[]) {
+            ((char[]) column)[row] = cursor.getChar(rangeIdx);
+        } else if (column instanceof float[]) {
+            ((float[]) column)[row] = (float) cursor.getDouble(rangeIdx);
+        } else if (column instanceof int[]) {
+            int[] ints = (int[]) column;
+            if (!vectorColumns[rangeIdx]) {
+                ints[row] = cursor.getInt(rangeIdx);
+            } else {
+                Vector2i vector = (Vector2i) cursor.getObject(rangeIdx);
+                ints[2 * row] = vector.x;
+                ints[2 * row + 1] = vector.y;
+            }
+        } else {
+            double[] doubles = (double[]) column;
+            if (!vectorColumns[rangeIdx]) {
+                doubles[row] = cursor.getDouble(rangeIdx);
+            } else {
+                Vector3d vector = (Vector3d) cursor.getObject(rangeIdx);
+                doubles[3 * row] = vector.x;
+                doubles[3 * row + 1] = vector.y;
+                doubles[3 * row + 2] = vector.z;
+            }
+        }
+    }
+
+    /**
+     * Получить столбец диапазона заданного типа
+     *
+     * @param rangeIdx номер диапазона
+     * @param type     тип столбца
+     * @param vector   флаг, нужен ли столбец координат векторов
+     * @param <T>      тип столбца
+     * @return столбец
+     */
+    private <T> T getColumn(int rangeIdx, Class<T> type, boolean vector) {
+        Object column = columns[rangeIdx];
+        if (!type.isInstance(column) || vectorColumns[rangeIdx] != vector)
+            throw new AssertionError("range " + rangeIdx + " column is " + column.getClass().getSimpleName() +
+                    (vectorColumns[rangeIdx] ? " of vector coords" : "") + ", not " + type.getSimpleName() +
+                    (vector ? " of vector coords" : ""));
+        return type.cast(column);
+    }
+
+    /**
+     * Получить значения диапазона int
+     *
+     * @param rangeIdx номер диапазона
+     * @return значения диапазона
+     */
+    public int[] getInts(int rangeIdx) {
+        return getColumn(rangeIdx, int[].class, false);
+    }
+
+    /**
+     * Получить значения диапазона long
+     *
+     * @param rangeIdx номер диапазона
+     * @return значения диапазона
+     */
+    public long[] getLongs(int rangeIdx) {
+        return getColumn(rangeIdx, long[].class, false);
+    }
+
+    /**
+     * Получить значения диапазона char
+     *
+     * @param rangeIdx номер диапазона
+     * @return значения диапазона
+     */
+    public char[] getChars(int rangeIdx) {
+        return getColumn(rangeIdx, char[].class, false);
+    }
+
+    /**
+     * Получить значения диапазона float
+     *
+     * @param rangeIdx номер диапазона
+     * @return значения диапазона
+     */
+    public float[] getFloats(int rangeIdx) {
+        return getColumn(rangeIdx, float[].class, false);
+    }
+
+    /**
+     * Получить значения диапазона double
+     *
+     * @param rangeIdx номер диапазона
+     * @return значения диапазона
+     */
+    public double[] getDoubles(int rangeIdx) {
+        return getColumn(rangeIdx, double[].class, false);
+    }
+
+    /**
+     * Получить координаты значений диапазона {@link Vector2iRange}: x0, y0, x1, y1, ...
+     *
+     * @param rangeIdx номер диапазона
+     * @return координаты значений диапазона
+     */
+    public int[] getVector2iCoords(int rangeIdx) {
+        return getColumn(rangeIdx, int[].class, true);
+    }
+
+    /**
+     * Получить координаты значений диапазона {@link Vector3dRange}: x0, y0, z0, x1, y1, z1, ...
+     *
+     * @param rangeIdx номер диапазона
+     * @return координаты значений диапазона
+     */
+    public double[] getVector3dCoords(int rangeIdx) {
+        return getColumn(rangeIdx, double[].class, true);
+    }
+
+    /**
+     * Получить значения диапазона, не являющегося примитивным или векторным
+     *
+     * @param rangeIdx номер диапазона
+     * @return значения диапазона
+     */
+    public Object[] getObjects(int rangeIdx) {
+        return getColumn(rangeIdx, Object[].class, false);
+    }
+
+    /**
+     * Получить номер первой комбинации пакета
+     *
+     * @return номер первой комбинации пакета
+     */
+    public BigInteger getStart() {
+        return start;
+    }
+
+    /**
+     * Получить кол-во комбинаций в пакете
+     *
+     * @return кол-во комбинаций в пакете
+     */
+    public int getSize() {
+        return size;
+    }
+}
@@ -0,0 +1,90 @@
+package center.buran.jcollections.combiners;
+
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Отрезок номеров комбинаций, занятый одним обработчиком
+ */
+public class CombinationChunk {
+    /**
+     * Комбайнер
+     */
+    private final Combiner combiner;
+    /**
+     * Номер первой комбинации отрезка
+     */
+    private final BigInteger start;
+    /**
+     * Кол-во комбинаций в отрезке
+     */
+    private final int size;
+
+    /**
+     * Конструктор отрезка комбинаций
+     *
+     * @param combiner комбайнер
+     * @param start    номер первой комбинации отрезка
+     * @param size     кол-во комбинаций в отрезке
+     */
+    public CombinationChunk(Combiner combiner, BigInteger start, int size) {
+        this.combiner = Objects.requireNonNull(combiner);
+        this.start = Objects.requireNonNull(start);
+        this.size = size;
+    }
+
+    /**
+     * Получить курсор, перебирающий комбинации отрезка
+     *
+     * @return курсор, перебирающий комбинации отрезка
+     */
+    public CombinationCursor cursor() {
+        return new CombinationCursor(combiner, start, BigInteger.valueOf(size));
+    }
+
+    /**
+     * Обработать все комбинации отрезка
+     *
+     * @param action обработчик комбинации
+     */
+    public void forEach(Consumer<List<Object>> action) {
+        CombinationCursor cursor = cursor();
+        while (cursor.next())
+            action.accept(cursor.toList());
+    }
+
+    /**
+     * Получить комбайнер
+     *
+     * @return комбайнер
+     */
+    public Combiner getCombiner() {
+        return combiner;
+    }
+
+    /**
+     * Получить номер первой комбинации отрезка
+     *
+     * @return номер первой комбинации отрезка
+     */
+    public BigInteger getStart() {
+        return start;
+    }
+
+    /**
+     * Получить кол-во комбинаций в отрезке
+     *
+     * @return кол-во комбинаций в отрезке
+     */
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "CombinationChunk{" + start + ", " + size + "}";
+    }
+}
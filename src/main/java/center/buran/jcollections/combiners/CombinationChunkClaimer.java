@@ -0,0 +1,108 @@
+package center.buran.jcollections.combiners;
+
+import java.util.Objects;
+
+/**
+ * Занимает у комбайнера отрезки комбинаций для одного обработчика, подбирая размер отрезка
+ * по измеренному времени обработки одной комбинации так, чтобы обработка отрезка занимала
+ * примерно заданное время.
+ * <p>
+ * Время обработки отрезка считается как время между двумя вызовами {@link #claim()},
+ * поэтому у каждого обработчика (потока) должен быть свой объект
+ */
+public class CombinationChunkClaimer {
+    /**
+     * Время обработки отрезка по умолчанию, нс
+     */
+    public static final long DEFAULT_TARGET_CHUNK_NANOS = 10_000_000L;
+    /**
+     * Максимальный размер отрезка по умолчанию
+     */
+    public static final int DEFAULT_MAX_CHUNK_SIZE = 1 << 20;
+    /**
+     * Вес нового измерения при сглаживании времени обработки комбинации
+     */
+    private static final double SMOOTHING = 0.25;
+    /**
+     * Комбайнер
+     */
+    private final Combiner combiner;
+    /**
+     * Желаемое время обработки отрезка, нс
+     */
+    private final long targetChunkNanos;
+    /**
+     * Максимальный размер отрезка
+     */
+    private final int maxChunkSize;
+    /**
+     * Сглаженное время обработки одной комбинации, нс (отрицательное, пока нет измерений)
+     */
+    private double nanosPerCombination = -1;
+    /**
+     * Время выдачи предыдущего отрезка, нс
+     */
+    private long lastClaimNanos;
+    /**
+     * Размер предыдущего отрезка
+     */
+    private int lastChunkSize;
+
+    /**
+     * Конструктор
+     *
+     * @param combiner         комбайнер
+     * @param targetChunkNanos желаемое время обработки отрезка, нс
+     * @param maxChunkSize     максимальный размер отрезка
+     */
+    public CombinationChunkClaimer(Combiner combiner, long targetChunkNanos, int maxChunkSize) {
+        this.combiner = Objects.requireNonNull(combiner);
+        if (targetChunkNanos <= 0)
+            throw new AssertionError("targetChunkNanos " + targetChunkNanos + " must be positive");
+        if (maxChunkSize <= 0)
+            throw new AssertionError("maxChunkSize " + maxChunkSize + " must be positive");
+        this.targetChunkNanos = targetChunkNanos;
+        this.maxChunkSize = maxChunkSize;
+    }
+
+    /**
+     * Конструктор
+     *
+     * @param combiner комбайнер
+     */
+    public CombinationChunkClaimer(Combiner combiner) {
+        this(combiner, DEFAULT_TARGET_CHUNK_NANOS, DEFAULT_MAX_CHUNK_SIZE);
+    }
+
+    /**
+     * Занять следующий отрезок комбинаций
+     *
+     * @return отрезок комбинаций, null, если комбинации закончились
+     */
+    public CombinationChunk claim() {
+        long now = System.nanoTime();
+        if (lastChunkSize > 0) {
+            double observed = (double) (now - lastClaimNanos) / lastChunkSize;
+            nanosPerCombination = nanosPerCombination < 0 ? observed :
+                    nanosPerCombination + SMOOTHING * (observed - nanosPerCombination);
+        }
+        CombinationChunk chunk = combiner.claimChunk(getNextChunkSize());
+        lastChunkSize = chunk == null ? 0 : chunk.getSize();
+        lastClaimNanos = System.nanoTime();
+        return chunk;
+    }
+
+    /**
+     * Получить размер следующего отрезка: пока нет измерений - одна комбинация, дальше
+     * размер подбирается под желаемое время, но растёт не больше, чем вдвое за раз
+     *
+     * @return размер следующего отрезка
+     */
+    public int getNextChunkSize() {
+        if (nanosPerCombination < 0)
+            return 1;
+        double size = targetChunkNanos / Math.max(nanosPerCombination, 1.0);
+        size = Math.min(size, 2.0 * Math.max(lastChunkSize, 1));
+        return (int) Math.max(1, Math.min(size, maxChunkSize));
+    }
+}
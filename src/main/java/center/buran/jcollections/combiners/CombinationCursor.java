@@ -0,0 +1,393 @@
+package center.buran.jcollections.combiners;
+
+import center.buran.jcollections.combiners.metrics.CombinerMetricsListener;
+import center.buran.jcollections.combiners.ranges.Range;
+import center.buran.jcollections.combiners.ranges.primitive.FloatRange;
+import center.buran.jcollections.combiners.ranges.primitive.PrimitiveRange;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Курсор последовательного перебора комбинаций комбайнера.
+ * Хранит номера шагов диапазонов и переходит к следующей комбинации как счётчик-одометр:
+ * увеличивается номер шага первого разрешённого диапазона, при переполнении он обнуляется
+ * и увеличивается номер шага следующего. Порядок перебора совпадает с порядком номеров комбинаций
+ * {@link Combiner#deconv(BigInteger)}. Переход к следующей комбинации и чтение значений
+ * примитивных диапазонов не создают новых объектов.
+ * <p>
+ * Кол-во перебранных комбинаций сообщается слушателю метрик комбайнера пачками по REPORT_BATCH
+ * и остатком, когда комбинации заканчиваются
+ * <p>
+ * Курсор не потокобезопасен: каждый поток должен работать со своим курсором
+ */
+public class CombinationCursor {
+    /**
+     * Кол-во комбинаций, после которого оно сообщается слушателю метрик
+     */
+    private static final int REPORT_BATCH = 1024;
+    /**
+     * Слушатель метрик комбайнера, null, если метрики не собираются
+     */
+    private final CombinerMetricsListener metricsListener;
+    /**
+     * Кол-во перебранных комбинаций, ещё не сообщённое слушателю метрик
+     */
+    private long unreportedCnt;
+    /**
+     * Диапазоны комбайнера
+     */
+    protected final Range[] ranges;
+    /**
+     * Номера шагов диапазонов в текущей комбинации
+     */
+    protected final int[] stepNums;
+    /**
+     * Номера разрешённых непустых диапазонов (разрядов свёртки) в порядке возрастания значимости
+     */
+    protected final int[] digitRangeIndexes;
+    /**
+     * Основания разрядов свёртки (кол-во шагов диапазона + 1)
+     */
+    protected final int[] radices;
+    /**
+     * Целочисленное значение диапазона на нулевом шаге (для запрещённых диапазонов - текущее значение)
+     */
+    private final long[] longMins;
+    /**
+     * Целочисленный шаг диапазона (для запрещённых диапазонов - ноль)
+     */
+    private final long[] longSteps;
+    /**
+     * Вещественное значение диапазона на нулевом шаге (для запрещённых диапазонов - текущее значение)
+     */
+    private final double[] doubleMins;
+    /**
+     * Вещественный шаг диапазона (для запрещённых диапазонов - ноль)
+     */
+    private final double[] doubleSteps;
+    /**
+     * Флаги, является ли диапазон целочисленным (int, long, char)
+     */
+    private final boolean[] integral;
+    /**
+     * Флаги, является ли диапазон вещественным (double, float)
+     */
+    private final boolean[] real;
+    /**
+     * Флаги, является ли диапазон диапазоном float (его значения считаются с точностью float)
+     */
+    private final boolean[] floatRange;
+    /**
+     * Номер первой комбинации курсора
+     */
+    private final BigInteger from;
+    /**
+     * Шаг перебора номеров комбинаций
+     */
+    private final BigInteger stride;
+    /**
+     * Шаг перебора, разложенный по разрядам свёртки, null, если шаг равен единице
+     */
+    private final int[] strideDigits;
+    /**
+     * Номер текущей комбинации относительно первой
+     */
+    private long offset;
+    /**
+     * Сколько комбинаций ещё можно перебрать
+     */
+    private long remaining;
+    /**
+     * Флаг, выдана ли уже первая комбинация
+     */
+    private boolean started;
+
+    /**
+     * Конструктор курсора
+     *
+     * @param combiner комбайнер
+     * @param from     номер первой комбинации
+     * @param count    кол-во комбинаций, которые нужно перебрать (если оно не помещается в long,
+     *                 перебор ограничен Long.MAX_VALUE комбинациями)
+     */
+    public CombinationCursor(Combiner combiner, BigInteger from, BigInteger count) {
+        this(combiner, from, count, BigInteger.ONE);
+    }
+
+    /**
+     * Конструктор курсора, перебирающего номера from, from + stride, from + 2 * stride, ...
+     *
+     * @param combiner комбайнер
+     * @param from     номер первой комбинации
+     * @param count    кол-во комбинаций, которые нужно перебрать (если оно не помещается в long,
+     *                 перебор ограничен Long.MAX_VALUE комбинациями)
+     * @param stride   шаг перебора номеров
+     */
+    public CombinationCursor(Combiner combiner, BigInteger from, BigInteger count, BigInteger stride) {
+        this.metricsListener = combiner.getMetricsListener();
+        this.from = Objects.requireNonNull(from);
+        if (stride.signum() <= 0)
+            throw new AssertionError("stride " + stride + " must be positive");
+        this.stride = stride;
+        this.remaining = count.bitLength() < 64 ? count.longValue() : Long.MAX_VALUE;
+        List<Range> rangeList = combiner.getRanges();
+        int rangeCnt = rangeList.size();
+        ranges = rangeList.toArray(new Range[0]);
+        stepNums = new int[rangeCnt];
+        longMins = new long[rangeCnt];
+        longSteps = new long[rangeCnt];
+        doubleMins = new double[rangeCnt];
+        doubleSteps = new double[rangeCnt];
+        integral = new boolean[rangeCnt];
+        real = new boolean[rangeCnt];
+        floatRange = new boolean[rangeCnt];
+
+        int digitCnt = 0;
+        for (Range range : ranges) {
+            if (!range.isEmpty() && range.isEnabled())
+                digitCnt++;
+        }
+        digitRangeIndexes = new int[digitCnt];
+        radices = new int[digitCnt];
+        int digit = 0;
+        for (int i = 0; i < rangeCnt; i++) {
+            Range range = ranges[i];
+            if (range.isEmpty())
+                continue;
+            if (range.isEnabled()) {
+                digitRangeIndexes[digit] = i;
+                radices[digit] = range.getStepCnt() + 1;
+                digit++;
+                if (range instanceof PrimitiveRange)
+                    initPrimitive(i, range.getMin(), ((PrimitiveRange) range).getStep());
+            } else if (range.getCurrentValue() != null) {
+                initPrimitive(i, range.getCurrentValue(), null);
+            }
+            floatRange[i] = range instanceof FloatRange;
+        }
+        if (stride.equals(BigInteger.ONE)) {
+            strideDigits = null;
+        } else {
+            strideDigits = new int[digitCnt];
+            BigInteger value = stride;
+            for (int i = 0; i < digitCnt; i++) {
+                BigInteger[] qr = value.divideAndRemainder(BigInteger.valueOf(radices[i]));
+                strideDigits[i] = qr[1].intValue();
+                value = qr[0];
+            }
+        }
+        setStepNums(from);
+    }
+
+    /**
+     * Запомнить примитивные значения диапазона
+     *
+     * @param rangeIdx номер диапазона
+     * @param min      значение на нулевом шаге
+     * @param step     шаг диапазона, null, если значение постоянно
+     */
+    private void initPrimitive(int rangeIdx, Object min, Object step) {
+        if (min instanceof Character) {
+            integral[rangeIdx] = true;
+            longMins[rangeIdx] = (char) min;
+            longSteps[rangeIdx] = step == null ? 0 : ((Number) step).longValue();
+        } else if (min instanceof Integer || min instanceof Long) {
+            integral[rangeIdx] = true;
+            longMins[rangeIdx] = ((Number) min).longValue();
+            longSteps[rangeIdx] = step == null ? 0 : ((Number) step).longValue();
+        } else if (min instanceof Double || min instanceof Float) {
+            real[rangeIdx] = true;
+            doubleMins[rangeIdx] = ((Number) min).doubleValue();
+            doubleSteps[rangeIdx] = step == null ? 0 : ((Number) step).doubleValue();
+        }
+    }
+
+    /**
+     * Разложить номер комбинации по разрядам свёртки
+     *
+     * @param combinationNumber номер комбинации
+     */
+    private void setStepNums(BigInteger combinationNumber) {
+        if (combinationNumber.bitLength() < 64) {
+            long value = combinationNumber.longValue();
+            for (int i = 0; i < radices.length; i++) {
+                stepNums[digitRangeIndexes[i]] = (int) (value % radices[i]);
+                value = value / radices[i];
+            }
+        } else {
+            BigInteger value = combinationNumber;
+            for (int i = 0; i < radices.length; i++) {
+                BigInteger[] qr = value.divideAndRemainder(BigInteger.valueOf(radices[i]));
+                stepNums[digitRangeIndexes[i]] = qr[1].intValue();
+                value = qr[0];
+            }
+        }
+    }
+
+    /**
+     * Перейти к следующей комбинации (первый вызов переходит к первой комбинации курсора)
+     *
+     * @return флаг, удалось ли перейти, false, если комбинации закончились
+     */
+    public boolean next() {
+        return reportDecoded(advance());
+    }
+
+    /**
+     * Учесть переход к следующей комбинации в метриках
+     *
+     * @param moved флаг, удалось ли перейти
+     * @return флаг, удалось ли перейти
+     */
+    protected final boolean reportDecoded(boolean moved) {
+        if (metricsListener == null)
+            return moved;
+        if (moved)
+            unreportedCnt++;
+        if (unreportedCnt > 0 && (!moved || unreportedCnt >= REPORT_BATCH)) {
+            metricsListener.onDecoded(unreportedCnt);
+            unreportedCnt = 0;
+        }
+        return moved;
+    }
+
+    /**
+     * Перейти к следующей комбинации без учёта в метриках
+     *
+     * @return флаг, удалось ли перейти, false, если комбинации закончились
+     */
+    private boolean advance() {
+        if (remaining <= 0)
+            return false;
+        remaining--;
+        if (!started) {
+            started = true;
+            return true;
+        }
+        offset++;
+        if (strideDigits != null) {
+            // сложение с шагом по разрядам с переносом
+            int carry = 0;
+            for (int i = 0; i < radices.length; i++) {
+                int rangeIdx = digitRangeIndexes[i];
+                int digit = stepNums[rangeIdx] + strideDigits[i] + carry;
+                carry = digit >= radices[i] ? 1 : 0;
+                stepNums[rangeIdx] = digit - carry * radices[i];
+            }
+            return true;
+        }
+        for (int i = 0; i < radices.length; i++) {
+            int rangeIdx = digitRangeIndexes[i];
+            if (++stepNums[rangeIdx] < radices[i])
+                return true;
+            stepNums[rangeIdx] = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Получить номер шага диапазона в текущей комбинации
+     *
+     * @param rangeIdx номер диапазона
+     * @return номер шага диапазона
+     */
+    public int getStepNum(int rangeIdx) {
+        return stepNums[rangeIdx];
+    }
+
+    /**
+     * Получить значение целочисленного диапазона (int, long, char) в текущей комбинации
+     *
+     * @param rangeIdx номер диапазона
+     * @return значение диапазона
+     */
+    public long getLong(int rangeIdx) {
+        if (!integral[rangeIdx])
+            throw new AssertionError("getLong(): range " + ranges[rangeIdx] + " is not integral");
+        return longMins[rangeIdx] + stepNums[rangeIdx] * longSteps[rangeIdx];
+    }
+
+    /**
+     * Получить значение целочисленного диапазона в текущей комбинации
+     *
+     * @param rangeIdx номер диапазона
+     * @return значение диапазона
+     */
+    public int getInt(int rangeIdx) {
+        return (int) getLong(rangeIdx);
+    }
+
+    /**
+     * Получить значение символьного диапазона в текущей комбинации
+     *
+     * @param rangeIdx номер диапазона
+     * @return значение диапазона
+     */
+    public char getChar(int rangeIdx) {
+        return (char) getLong(rangeIdx);
+    }
+
+    /**
+     * Получить значение примитивного диапазона в текущей комбинации как вещественное число
+     *
+     * @param rangeIdx номер диапазона
+     * @return значение диапазона
+     */
+    public double getDouble(int rangeIdx) {
+        if (integral[rangeIdx])
+            return getLong(rangeIdx);
+        if (!real[rangeIdx])
+            throw new AssertionError("getDouble(): range " + ranges[rangeIdx] + " is not primitive");
+        if (floatRange[rangeIdx])
+            return stepNums[rangeIdx] * (float) doubleSteps[rangeIdx] + (float) doubleMins[rangeIdx];
+        return stepNums[rangeIdx] * doubleSteps[rangeIdx] + doubleMins[rangeIdx];
+    }
+
+    /**
+     * Получить значение диапазона в текущей комбинации
+     *
+     * @param rangeIdx номер диапазона
+     * @return значение диапазона, null для пустого диапазона
+     */
+    public Object getObject(int rangeIdx) {
+        Range range = ranges[rangeIdx];
+        if (range.isEmpty())
+            return null;
+        if (!range.isEnabled())
+            return range.getCurrentValue();
+        return range.getValue(stepNums[rangeIdx]);
+    }
+
+    /**
+     * Получить текущую комбинацию в виде списка (как {@link Combiner#deconv(BigInteger)})
+     *
+     * @return текущая комбинация
+     */
+    public List<Object> toList() {
+        List<Object> res = new ArrayList<>(ranges.length + 1);
+        for (int i = 0; i < ranges.length; i++)
+            res.add(getObject(i));
+        return res;
+    }
+
+    /**
+     * Получить номер текущей комбинации
+     *
+     * @return номер текущей комбинации
+     */
+    public BigInteger getPosition() {
+        return from.add(BigInteger.valueOf(offset).multiply(stride));
+    }
+
+    /**
+     * Получить кол-во диапазонов
+     *
+     * @return кол-во диапазонов
+     */
+    public int getRangeCnt() {
+        return ranges.length;
+    }
+}
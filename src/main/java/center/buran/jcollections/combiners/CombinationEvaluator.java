@@ -0,0 +1,174 @@
+package center.buran.jcollections.combiners;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Параллельная обработка всех комбинаций комбайнера.
+ * Комбинации перебираются курсором в вызывающем потоке, каждая обрабатывается отдельной задачей.
+ * Кол-во одновременно обрабатываемых комбинаций ограничено семафором, поэтому комбинации
+ * не накапливаются в очереди исполнителя. Результаты передаются приёмнику сразу по готовности
+ * под блокировкой, так что приёмник может быть не потокобезопасным.
+ * Когда время вышло, ещё не завершённые задачи отменяются (и в очереди исполнителя, и выполняющиеся
+ * прерываются), а приёмник после возврата из обработки больше не вызывается.
+ * <p>
+ * По умолчанию задачи выполняются на виртуальных потоках, если они есть в JVM
+ * (Executors.newVirtualThreadPerTaskExecutor ищется через отражение, т.к. проект собирается под Java 13),
+ * иначе на пуле потоков, создаваемых по необходимости: обработчики, которые ждут диска или
+ * внешних процессов, не простаивают из-за пула размером с кол-во ядер
+ */
+class CombinationEvaluator {
+    /**
+     * Шаг проверки отмены и времени при ожидании свободного места, мс
+     */
+    private static final long POLL_MILLIS = 10;
+
+    /**
+     * Обработать все комбинации комбайнера
+     *
+     * @param combiner  комбайнер
+     * @param evaluator обработчик комбинации
+     * @param sink      приёмник результатов
+     * @param options   параметры обработки
+     * @param <R>       тип результата
+     * @return флаг, обработаны ли все комбинации (false, если обработка отменена или вышло время)
+     * @throws CompletionException обработчик выбросил проверяемое исключение (оно - причина)
+     */
+    static <R> boolean evaluateAll(
+            Combiner combiner, Function<List<Object>, R> evaluator, Consumer<R> sink, EvaluationOptions options
+    ) {
+        Objects.requireNonNull(evaluator);
+        Objects.requireNonNull(sink);
+        Objects.requireNonNull(options);
+        long deadline = options.getTimeout() == null ? 0 : System.nanoTime() + options.getTimeout().toNanos();
+        boolean ownExecutor = options.getExecutor() == null;
+        ExecutorService executor = ownExecutor ? newVirtualThreadExecutor() : options.getExecutor();
+        int maxInFlight = options.getMaxInFlight();
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Object sinkLock = new Object();
+        // запущенные задачи: задача убирает себя и освобождает место, когда завершается или отменяется
+        Set<Future<?>> running = ConcurrentHashMap.newKeySet();
+        AtomicBoolean stopped = new AtomicBoolean();
+        boolean finished = true;
+        try {
+            CombinationCursor cursor = combiner.cursor();
+            while (cursor.next()) {
+                if (!acquire(inFlight, 1, deadline, options, failure, true)) {
+                    finished = false;
+                    break;
+                }
+                List<Object> combination = cursor.toList();
+                FutureTask<Void> task = new FutureTask<>(() -> {
+                    try {
+                        // после отмены задачи, ещё не начавшие обработку, сразу завершаются
+                        if (failure.get() != null || stopped.get())
+                            return;
+                        R result = evaluator.apply(combination);
+                        synchronized (sinkLock) {
+                            if (!stopped.get())
+                                sink.accept(result);
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    }
+                }, null) {
+                    @Override
+                    protected void done() {
+                        running.remove(this);
+                        inFlight.release();
+                    }
+                };
+                running.add(task);
+                executor.execute(task);
+            }
+            // ждём завершения запущенных задач не дольше отведённого времени, потом отменяем их
+            if (!acquire(inFlight, maxInFlight, deadline, options, failure, false)) {
+                finished = false;
+                synchronized (sinkLock) {
+                    stopped.set(true);
+                }
+                for (Future<?> task : running)
+                    task.cancel(true);
+                if (ownExecutor)
+                    executor.shutdownNow();
+            }
+        } finally {
+            if (ownExecutor)
+                executor.shutdown();
+        }
+        Throwable t = failure.get();
+        if (t instanceof RuntimeException)
+            throw (RuntimeException) t;
+        if (t instanceof Error)
+            throw (Error) t;
+        // проверяемое исключение, выброшенное обработчиком в обход компилятора, тоже не теряется
+        if (t != null)
+            throw new CompletionException(t);
+        return finished;
+    }
+
+    /**
+     * Занять места в семафоре, периодически проверяя время, а также отмену и ошибки обработки
+     *
+     * @param semaphore   семафор
+     * @param permits     кол-во мест
+     * @param deadline    момент окончания отведённого времени, нс (если время ограничено)
+     * @param options     параметры обработки
+     * @param failure     первая ошибка обработки
+     * @param checkCancel флаг, нужно ли прекращать ожидание при отмене и ошибках обработки
+     * @return флаг, удалось ли занять места
+     */
+    private static boolean acquire(
+            Semaphore semaphore, int permits, long deadline, EvaluationOptions options,
+            AtomicReference<Throwable> failure, boolean checkCancel
+    ) {
+        try {
+            while (true) {
+                if (checkCancel && (options.getCancelled().getAsBoolean() || failure.get() != null))
+                    return false;
+                boolean timed = options.getTimeout() != null;
+                if ((timed && System.nanoTime() - deadline >= 0) || Thread.currentThread().isInterrupted())
+                    return false;
+                long waitNanos = TimeUnit.MILLISECONDS.toNanos(POLL_MILLIS);
+                if (timed)
+                    waitNanos = Math.max(Math.min(waitNanos, deadline - System.nanoTime()), 0);
+                if (semaphore.tryAcquire(permits, waitNanos, TimeUnit.NANOSECONDS))
+                    return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Создать исполнитель на виртуальных потоках, а если их нет - на потоках, создаваемых по необходимости
+     *
+     * @return исполнитель задач
+     */
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Конструктор для запрета создания объектов
+     */
+    private CombinationEvaluator() {
+        // Подавление создания конструктора по умолчанию
+    }
+}
@@ -0,0 +1,149 @@
+package center.buran.jcollections.combiners;
+
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * Переиспользуемое представление комбинации с доступом к значениям по названиям диапазонов.
+ * Значения хранятся в массиве, который перезаписывается при получении следующей комбинации
+ * ({@link Combiner#getNextAsRecord(CombinationRecord)}), названия диапазонов разрешаются
+ * в номера по словарю комбайнера, новый словарь создаётся только в {@link #toMap()}.
+ * <p>
+ * Номер диапазона можно получить один раз методом {@link #indexOf(String)} и дальше
+ * читать значения по номеру. Запись не потокобезопасна: у каждого потока должна быть своя
+ */
+public class CombinationRecord {
+    /**
+     * Словарь номеров диапазонов по их названиям (общий с комбайнером, только для чтения)
+     */
+    private final Map<String, Integer> rangeDict;
+    /**
+     * Названия диапазонов по их номерам
+     */
+    private final String[] names;
+    /**
+     * Значения диапазонов в текущей комбинации
+     */
+    final Object[] values;
+    /**
+     * Номер текущей комбинации, если он помещается в long, -1, если номер задан в BigInteger или не задан
+     */
+    private long longPosition = -1;
+    /**
+     * Номер текущей комбинации в BigInteger (для номера в long создаётся при первом запросе),
+     * null, если комбинация ещё не задана или номер ещё не запрашивался
+     */
+    private BigInteger position;
+
+    /**
+     * Конструктор записи
+     *
+     * @param rangeDict словарь номеров диапазонов по их названиям
+     * @param names     названия диапазонов по их номерам
+     */
+    CombinationRecord(Map<String, Integer> rangeDict, String[] names) {
+        this.rangeDict = Collections.unmodifiableMap(rangeDict);
+        this.names = names;
+        this.values = new Object[names.length];
+    }
+
+    /**
+     * Задать номер текущей комбинации (значения уже записаны в массив)
+     *
+     * @param position номер комбинации
+     */
+    void setPosition(BigInteger position) {
+        this.longPosition = -1;
+        this.position = position;
+    }
+
+    /**
+     * Задать номер текущей комбинации, не создавая BigInteger (значения уже записаны в массив)
+     *
+     * @param position номер комбинации
+     */
+    void setPosition(long position) {
+        this.longPosition = position;
+        this.position = null;
+    }
+
+    /**
+     * Получить номер диапазона по названию
+     *
+     * @param name название диапазона
+     * @return номер диапазона
+     */
+    public int indexOf(String name) {
+        Integer idx = rangeDict.get(Objects.requireNonNull(name));
+        if (idx == null)
+            throw new AssertionError("range " + name + " not found");
+        return idx;
+    }
+
+    /**
+     * Получить значение диапазона по названию
+     *
+     * @param name название диапазона
+     * @return значение диапазона
+     */
+    public Object get(String name) {
+        return values[indexOf(name)];
+    }
+
+    /**
+     * Получить значение диапазона по номеру
+     *
+     * @param rangeIdx номер диапазона
+     * @return значение диапазона
+     */
+    public Object get(int rangeIdx) {
+        return values[rangeIdx];
+    }
+
+    /**
+     * Получить номер текущей комбинации
+     *
+     * @return номер текущей комбинации, null, если комбинация ещё не задана
+     */
+    public BigInteger getPosition() {
+        if (position == null && longPosition >= 0)
+            position = BigInteger.valueOf(longPosition);
+        return position;
+    }
+
+    /**
+     * Получить кол-во диапазонов
+     *
+     * @return кол-во диапазонов
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Получить текущую комбинацию в виде словаря (как {@link Combiner#getNextAsDict()})
+     *
+     * @return новый словарь значений диапазонов по их названиям
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>(2 * (values.length + 1));
+        for (int i = 0; i < values.length; i++)
+            map.put(names[i], values[i]);
+        map.put("combinationLoopPos", getPosition());
+        return map;
+    }
+
+    /**
+     * Получить текущую комбинацию в виде списка (как {@link Combiner#deconv(BigInteger)})
+     *
+     * @return новый список значений диапазонов
+     */
+    public List<Object> toList() {
+        return new ArrayList<>(Arrays.asList(values));
+    }
+
+    @Override
+    public String toString() {
+        return "CombinationRecord{" + getPosition() + ": " + Arrays.toString(values) + "}";
+    }
+}
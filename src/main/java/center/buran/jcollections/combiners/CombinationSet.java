@@ -0,0 +1,270 @@
+package center.buran.jcollections.combiners;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Набор комбинаций AlphaCombiner в виде битового множества номеров комбинаций.
+ * Номера хранятся в словах long, поэтому добавление номера не копирует всё число, как
+ * {@link BigInteger#setBit(int)}, а единичные биты перебираются по словам через
+ * {@link Long#numberOfTrailingZeros(long)}. Набор переводится в номер набора AlphaCombiner и обратно
+ * за время, пропорциональное кол-ву слов
+ */
+public class CombinationSet {
+    /**
+     * Слова битового множества: номер комбинации i хранится в бите i % 64 слова i / 64
+     */
+    private long[] words;
+    /**
+     * Кол-во используемых слов (старшее используемое слово не нулевое)
+     */
+    private int wordCnt;
+
+    /**
+     * Конструктор пустого набора
+     */
+    public CombinationSet() {
+        this.words = new long[1];
+    }
+
+    /**
+     * Конструктор набора по словам
+     *
+     * @param words слова битового множества
+     */
+    private CombinationSet(long[] words) {
+        this.words = words;
+        this.wordCnt = words.length;
+        trim();
+    }
+
+    /**
+     * Создать набор по номеру набора AlphaCombiner
+     *
+     * @param value номер набора
+     * @return набор комбинаций
+     */
+    public static CombinationSet fromBigInteger(BigInteger value) {
+        if (value.signum() < 0)
+            throw new AssertionError("combination set number " + value + " must not be negative");
+        byte[] bytes = value.toByteArray();
+        long[] words = new long[(bytes.length + 7) / 8];
+        for (int i = 0; i < bytes.length; i++)
+            words[i / 8] |= (bytes[bytes.length - 1 - i] & 0xFFL) << (8 * (i % 8));
+        return new CombinationSet(words);
+    }
+
+    /**
+     * Получить номер набора AlphaCombiner
+     *
+     * @return число, единичные биты которого - номера комбинаций набора
+     */
+    public BigInteger toBigInteger() {
+        byte[] bytes = new byte[wordCnt * 8];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[bytes.length - 1 - i] = (byte) (words[i / 8] >>> (8 * (i % 8)));
+        return new BigInteger(1, bytes);
+    }
+
+    /**
+     * Убрать нулевые старшие слова из кол-ва используемых
+     */
+    private void trim() {
+        while (wordCnt > 0 && words[wordCnt - 1] == 0)
+            wordCnt--;
+    }
+
+    /**
+     * Добавить комбинацию в набор
+     *
+     * @param combinationNum номер комбинации
+     * @return набор
+     */
+    public CombinationSet add(int combinationNum) {
+        if (combinationNum < 0)
+            throw new AssertionError("combination number " + combinationNum + " must not be negative");
+        int wordNum = combinationNum >>> 6;
+        if (wordNum >= words.length)
+            words = Arrays.copyOf(words, Math.max(2 * words.length, wordNum + 1));
+        words[wordNum] |= 1L << combinationNum;
+        wordCnt = Math.max(wordCnt, wordNum + 1);
+        return this;
+    }
+
+    /**
+     * Убрать комбинацию из набора
+     *
+     * @param combinationNum номер комбинации
+     * @return набор
+     */
+    public CombinationSet remove(int combinationNum) {
+        int wordNum = combinationNum >>> 6;
+        if (combinationNum >= 0 && wordNum < wordCnt) {
+            words[wordNum] &= ~(1L << combinationNum);
+            trim();
+        }
+        return this;
+    }
+
+    /**
+     * Проверить, есть ли комбинация в наборе
+     *
+     * @param combinationNum номер комбинации
+     * @return флаг, есть ли комбинация в наборе
+     */
+    public boolean contains(int combinationNum) {
+        int wordNum = combinationNum >>> 6;
+        return combinationNum >= 0 && wordNum < wordCnt && (words[wordNum] & 1L << combinationNum) != 0;
+    }
+
+    /**
+     * Получить номер следующей комбинации набора
+     *
+     * @param from номер комбинации, с которой начинается поиск
+     * @return номер первой комбинации набора, не меньший from, -1, если такой нет
+     */
+    public int nextCombinationNum(int from) {
+        if (from < 0)
+            from = 0;
+        int wordNum = from >>> 6;
+        if (wordNum >= wordCnt)
+            return -1;
+        long word = words[wordNum] & -1L << from;
+        while (true) {
+            if (word != 0)
+                return wordNum * 64 + Long.numberOfTrailingZeros(word);
+            if (++wordNum >= wordCnt)
+                return -1;
+            word = words[wordNum];
+        }
+    }
+
+    /**
+     * Обработать номера комбинаций набора по возрастанию
+     *
+     * @param action обработчик номера комбинации
+     */
+    public void forEach(IntConsumer action) {
+        for (int wordNum = 0; wordNum < wordCnt; wordNum++) {
+            long word = words[wordNum];
+            while (word != 0) {
+                action.accept(wordNum * 64 + Long.numberOfTrailingZeros(word));
+                // сбрасываем младший единичный бит
+                word &= word - 1;
+            }
+        }
+    }
+
+    /**
+     * Получить номера комбинаций набора
+     *
+     * @return номера комбинаций по возрастанию
+     */
+    public int[] toArray() {
+        int[] res = new int[size()];
+        int i = 0;
+        for (int wordNum = 0; wordNum < wordCnt; wordNum++) {
+            long word = words[wordNum];
+            while (word != 0) {
+                res[i++] = wordNum * 64 + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Получить кол-во комбинаций в наборе
+     *
+     * @return кол-во комбинаций
+     */
+    public int size() {
+        int cnt = 0;
+        for (int i = 0; i < wordCnt; i++)
+            cnt += Long.bitCount(words[i]);
+        return cnt;
+    }
+
+    /**
+     * Проверить, пуст ли набор
+     *
+     * @return флаг, пуст ли набор
+     */
+    public boolean isEmpty() {
+        return wordCnt == 0;
+    }
+
+    /**
+     * Получить объединение наборов
+     *
+     * @param other другой набор
+     * @return новый набор с комбинациями обоих наборов
+     */
+    public CombinationSet union(CombinationSet other) {
+        long[] res = Arrays.copyOf(words, Math.max(wordCnt, other.wordCnt));
+        for (int i = 0; i < other.wordCnt; i++)
+            res[i] |= other.words[i];
+        return new CombinationSet(res);
+    }
+
+    /**
+     * Получить пересечение наборов
+     *
+     * @param other другой набор
+     * @return новый набор с комбинациями, которые есть в обоих наборах
+     */
+    public CombinationSet intersection(CombinationSet other) {
+        long[] res = Arrays.copyOf(words, Math.min(wordCnt, other.wordCnt));
+        for (int i = 0; i < res.length; i++)
+            res[i] &= other.words[i];
+        return new CombinationSet(res);
+    }
+
+    /**
+     * Получить разность наборов
+     *
+     * @param other другой набор
+     * @return новый набор с комбинациями этого набора, которых нет в другом
+     */
+    public CombinationSet difference(CombinationSet other) {
+        long[] res = Arrays.copyOf(words, wordCnt);
+        for (int i = 0; i < Math.min(wordCnt, other.wordCnt); i++)
+            res[i] &= ~other.words[i];
+        return new CombinationSet(res);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        CombinationSet that = (CombinationSet) o;
+
+        return Arrays.equals(words, 0, wordCnt, that.words, 0, that.wordCnt);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 1;
+        for (int i = 0; i < wordCnt; i++)
+            result = 31 * result + Long.hashCode(words[i]);
+        return result;
+    }
+
+    /**
+     * Строковое представление объекта вида:
+     *
+     * @return "CombinationSet{номера комбинаций}"
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("CombinationSet{");
+        forEach(i -> {
+            if (sb.length() > "CombinationSet{".length())
+                sb.append(", ");
+            sb.append(i);
+        });
+        return sb.append('}').toString();
+    }
+}
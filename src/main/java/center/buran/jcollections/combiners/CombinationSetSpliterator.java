@@ -0,0 +1,265 @@
+package center.buran.jcollections.combiners;
+
+import java.math.BigInteger;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Сплитератор подходящих наборов комбинаций GammaCombiner, строящий их поиском в глубину.
+ * Набор - это число, единичные биты которого - номера входящих в него комбинаций.
+ * Наборы выдаются по возрастанию чисел, как в таблице GammaCombiner: сначала набор без комбинаций,
+ * потом наборы, старшая комбинация которых нулевая, первая и т.д., а наборы с одной и той же старшей
+ * комбинацией - так же рекурсивно по младшим. Комбинация добавляется в набор, только если её значения
+ * в диапазонах с неповторяемыми значениями ещё не заняты, поэтому неподходящие наборы не строятся вовсе.
+ * <p>
+ * Сплитератор отвечает за наборы, которые содержат заданные старшие комбинации (корень) и
+ * следующую комбинацию с номером из отрезка [lo, hi). Делится по этому отрезку: префиксу отдаются
+ * все комбинации, кроме последней, т.к. наборов со старшей комбинацией hi - 1 примерно столько же,
+ * сколько со всеми меньшими. Если в отрезке осталась одна комбинация, она добавляется к корню
+ */
+class CombinationSetSpliterator implements Spliterator<BigInteger> {
+    /**
+     * Номера значений диапазонов с неповторяемыми значениями по номеру комбинации: номер значения
+     * k-го диапазона в i-й комбинации хранится под индексом i * valueCnts.length + k
+     */
+    private final int[] values;
+    /**
+     * Кол-во комбинаций
+     */
+    private final int combinationCnt;
+    /**
+     * Кол-во значений каждого диапазона с неповторяемыми значениями
+     */
+    private final int[] valueCnts;
+    /**
+     * Минимальное кол-во комбинаций в наборе
+     */
+    private final int minSize;
+    /**
+     * Максимальное кол-во комбинаций в наборе
+     */
+    private final int maxSize;
+    /**
+     * Смещения битовых множеств занятых значений каждого диапазона в массиве слов
+     */
+    private final int[] usedWordOffsets;
+    /**
+     * Слова битовых множеств занятых значений
+     */
+    private final long[] usedWords;
+    /**
+     * Номера комбинаций текущего набора по убыванию
+     */
+    private final int[] chosen;
+    /**
+     * Номер следующей комбинации, которую нужно попробовать добавить на каждом уровне
+     */
+    private final int[] next;
+    /**
+     * Номер комбинации, следующей за последней, которую можно добавить на каждом уровне
+     */
+    private final int[] bound;
+    /**
+     * Кол-во комбинаций корня
+     */
+    private int base;
+    /**
+     * Кол-во комбинаций текущего набора
+     */
+    private int depth;
+    /**
+     * Флаг, нужно ли ещё выдать сам корень
+     */
+    private boolean pendingRoot;
+    /**
+     * Флаг, начат ли обход
+     */
+    private boolean started;
+
+    /**
+     * Конструктор сплитератора всех наборов
+     *
+     * @param values         номера значений диапазонов с неповторяемыми значениями по номеру комбинации
+     * @param combinationCnt кол-во комбинаций
+     * @param valueCnts      кол-во значений каждого диапазона с неповторяемыми значениями
+     * @param minSize        минимальное кол-во комбинаций в наборе
+     * @param maxSize        максимальное кол-во комбинаций в наборе
+     */
+    CombinationSetSpliterator(int[] values, int combinationCnt, int[] valueCnts, int minSize, int maxSize) {
+        this.values = Objects.requireNonNull(values);
+        this.combinationCnt = combinationCnt;
+        this.valueCnts = Objects.requireNonNull(valueCnts);
+        if (minSize < 0 || maxSize < minSize)
+            throw new AssertionError("wrong combination set size bounds [" + minSize + ", " + maxSize + "]");
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.usedWordOffsets = new int[valueCnts.length + 1];
+        for (int k = 0; k < valueCnts.length; k++)
+            usedWordOffsets[k + 1] = usedWordOffsets[k] + (valueCnts[k] + 63) / 64;
+        this.usedWords = new long[usedWordOffsets[valueCnts.length]];
+        int capacity = Math.min(maxSize, combinationCnt) + 1;
+        this.chosen = new int[capacity];
+        this.next = new int[capacity];
+        this.bound = new int[capacity];
+        this.bound[0] = combinationCnt;
+        this.pendingRoot = true;
+    }
+
+    /**
+     * Конструктор сплитератора с тем же корнем и отрезком номеров следующей комбинации
+     *
+     * @param source      сплитератор, корень которого берётся
+     * @param lo          номер первой комбинации отрезка
+     * @param hi          номер комбинации, следующей за последней комбинацией отрезка
+     * @param pendingRoot флаг, нужно ли выдать сам корень
+     */
+    private CombinationSetSpliterator(CombinationSetSpliterator source, int lo, int hi, boolean pendingRoot) {
+        this(source.values, source.combinationCnt, source.valueCnts, source.minSize, source.maxSize);
+        for (int i = 0; i < source.base; i++) {
+            chosen[i] = source.chosen[i];
+            mark(chosen[i], true);
+        }
+        this.base = source.base;
+        this.depth = source.base;
+        this.next[base] = lo;
+        this.bound[base] = hi;
+        this.pendingRoot = pendingRoot;
+    }
+
+    /**
+     * Проверить, можно ли добавить комбинацию в текущий набор
+     *
+     * @param combinationNum номер комбинации
+     * @return флаг, не заняты ли значения комбинации
+     */
+    private boolean isCompatible(int combinationNum) {
+        int offset = combinationNum * valueCnts.length;
+        for (int k = 0; k < valueCnts.length; k++) {
+            int value = values[offset + k];
+            if ((usedWords[usedWordOffsets[k] + (value >>> 6)] & 1L << value) != 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Занять или освободить значения комбинации
+     *
+     * @param combinationNum номер комбинации
+     * @param flag           true - занять, false - освободить
+     */
+    private void mark(int combinationNum, boolean flag) {
+        int offset = combinationNum * valueCnts.length;
+        for (int k = 0; k < valueCnts.length; k++) {
+            int value = values[offset + k];
+            if (flag)
+                usedWords[usedWordOffsets[k] + (value >>> 6)] |= 1L << value;
+            else
+                usedWords[usedWordOffsets[k] + (value >>> 6)] &= ~(1L << value);
+        }
+    }
+
+    /**
+     * Добавить комбинацию в текущий набор
+     *
+     * @param combinationNum номер комбинации
+     */
+    private void push(int combinationNum) {
+        chosen[depth] = combinationNum;
+        mark(combinationNum, true);
+        depth++;
+        if (depth < next.length) {
+            next[depth] = 0;
+            bound[depth] = combinationNum;
+        }
+    }
+
+    /**
+     * Получить число текущего набора
+     *
+     * @return число, единичные биты которого - номера комбинаций текущего набора
+     */
+    private BigInteger value() {
+        if (depth == 0)
+            return BigInteger.ZERO;
+        // старшая комбинация - первая, собираем число сразу из байт
+        byte[] magnitude = new byte[chosen[0] / 8 + 1];
+        for (int i = 0; i < depth; i++)
+            magnitude[magnitude.length - 1 - chosen[i] / 8] |= 1 << (chosen[i] % 8);
+        return new BigInteger(1, magnitude);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super BigInteger> action) {
+        started = true;
+        if (pendingRoot) {
+            pendingRoot = false;
+            if (base >= minSize && base <= maxSize) {
+                action.accept(value());
+                return true;
+            }
+        }
+        while (true) {
+            int combinationNum = -1;
+            if (depth < maxSize) {
+                // комбинаций меньше текущей должно хватить до минимального размера набора
+                for (int i = Math.max(next[depth], minSize - depth - 1); i < bound[depth]; i++)
+                    if (isCompatible(i)) {
+                        combinationNum = i;
+                        break;
+                    }
+            }
+            if (combinationNum >= 0) {
+                next[depth] = combinationNum + 1;
+                push(combinationNum);
+                if (depth >= minSize) {
+                    action.accept(value());
+                    return true;
+                }
+            } else {
+                if (depth == base) {
+                    next[base] = bound[base];
+                    return false;
+                }
+                depth--;
+                mark(chosen[depth], false);
+            }
+        }
+    }
+
+    @Override
+    public Spliterator<BigInteger> trySplit() {
+        if (started)
+            return null;
+        int lo = next[base];
+        int hi = bound[base];
+        // сам корень идёт раньше всех наборов, которые его продолжают
+        if (pendingRoot && hi > lo) {
+            pendingRoot = false;
+            return new CombinationSetSpliterator(this, lo, lo, true);
+        }
+        if (hi - lo >= 2) {
+            next[base] = hi - 1;
+            return new CombinationSetSpliterator(this, lo, hi - 1, false);
+        }
+        // одна комбинация: добавляем её к корню и делим уже продолжения корня
+        if (hi - lo == 1 && base < maxSize && base + 1 < next.length && isCompatible(lo)) {
+            push(lo);
+            base = depth;
+            pendingRoot = true;
+            return trySplit();
+        }
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | DISTINCT | NONNULL | IMMUTABLE;
+    }
+}
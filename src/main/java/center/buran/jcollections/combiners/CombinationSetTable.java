@@ -0,0 +1,116 @@
+package center.buran.jcollections.combiners;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Отсортированная по возрастанию таблица чисел наборов комбинаций GammaCombiner.
+ * Поддерживает выбор числа по номеру ({@link #get(long)}) и поиск номера по числу ({@link #indexOf(BigInteger)})
+ */
+public abstract class CombinationSetTable {
+    /**
+     * Создать таблицу в куче по отсортированному списку чисел
+     *
+     * @param values отсортированный по возрастанию список чисел наборов
+     * @return таблица
+     */
+    static CombinationSetTable of(List<BigInteger> values) {
+        return new HeapCombinationSetTable(values);
+    }
+
+    /**
+     * Получить кол-во наборов в таблице
+     *
+     * @return кол-во наборов
+     */
+    public abstract long size();
+
+    /**
+     * Получить число набора по номеру
+     *
+     * @param index номер набора
+     * @return число набора
+     */
+    public abstract BigInteger get(long index);
+
+    /**
+     * Сравнить число набора с заданным числом
+     *
+     * @param index номер набора
+     * @param value число
+     * @return результат сравнения, как в {@link Comparable#compareTo(Object)}
+     */
+    protected int compareAt(long index, BigInteger value) {
+        return get(index).compareTo(value);
+    }
+
+    /**
+     * Найти номер набора по его числу
+     *
+     * @param value число набора
+     * @return номер набора, -1, если такого набора нет
+     */
+    public long indexOf(BigInteger value) {
+        long idx = indexOf(value, 0, size());
+        return idx >= 0 ? idx : -1;
+    }
+
+    /**
+     * Найти номер набора по его числу двоичным поиском на отрезке номеров
+     *
+     * @param value число набора
+     * @param from  номер первого набора отрезка
+     * @param to    номер набора, следующего за последним набором отрезка
+     * @return номер набора, если он найден, иначе -(точка вставки) - 1, как в {@link java.util.Arrays#binarySearch(long[], long)}
+     */
+    public long indexOf(BigInteger value, long from, long to) {
+        Objects.requireNonNull(value);
+        long lo = from;
+        long hi = to - 1;
+        while (lo <= hi) {
+            long mid = (lo + hi) >>> 1;
+            int cmp = compareAt(mid, value);
+            if (cmp < 0)
+                lo = mid + 1;
+            else if (cmp > 0)
+                hi = mid - 1;
+            else
+                return mid;
+        }
+        return -(lo + 1);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CombinationSetTable)) return false;
+
+        CombinationSetTable that = (CombinationSetTable) o;
+
+        if (size() != that.size())
+            return false;
+        for (long i = 0; i < size(); i++)
+            if (!get(i).equals(that.get(i)))
+                return false;
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 1;
+        for (long i = 0; i < size(); i++)
+            result = 31 * result + get(i).hashCode();
+        return result;
+    }
+
+    /**
+     * Строковое представление объекта вида:
+     *
+     * @return "CombinationSetTable{size}"
+     */
+    @Override
+    public String toString() {
+        return "CombinationSetTable{" + size() + '}';
+    }
+}
@@ -0,0 +1,184 @@
+package center.buran.jcollections.combiners;
+
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Сплитератор комбинаций комбайнера по отрезку номеров [from, to).
+ * Делится пополам по номерам комбинаций, комбинации разворачиваются только при обходе.
+ * Если номера помещаются в long, то все вычисления ведутся в long.
+ * Если задана перестановка номеров, то вместо комбинации с номером i выдаётся комбинация
+ * с номером permutation.permute(i)
+ */
+public class CombinationSpliterator implements Spliterator<List<Object>> {
+    /**
+     * Комбайнер
+     */
+    private final Combiner combiner;
+    /**
+     * Флаг, помещаются ли номера комбинаций в long
+     */
+    private final boolean longMode;
+    /**
+     * Перестановка номеров комбинаций, null, если комбинации перебираются по порядку
+     */
+    private final IndexPermutation permutation;
+    /**
+     * Номер следующей комбинации (если номера помещаются в long)
+     */
+    private long pos;
+    /**
+     * Номер комбинации, следующей за последней (если номера помещаются в long)
+     */
+    private long end;
+    /**
+     * Номер следующей комбинации (если номера не помещаются в long)
+     */
+    private BigInteger bigPos;
+    /**
+     * Номер комбинации, следующей за последней (если номера не помещаются в long)
+     */
+    private BigInteger bigEnd;
+
+    /**
+     * Конструктор сплитератора
+     *
+     * @param combiner комбайнер
+     * @param from     номер первой комбинации
+     * @param to       номер комбинации, следующей за последней
+     */
+    public CombinationSpliterator(Combiner combiner, BigInteger from, BigInteger to) {
+        this(combiner, from, to, null);
+    }
+
+    /**
+     * Конструктор сплитератора
+     *
+     * @param combiner    комбайнер
+     * @param from        номер первой комбинации
+     * @param to          номер комбинации, следующей за последней
+     * @param permutation перестановка номеров комбинаций, null, если комбинации перебираются по порядку
+     */
+    public CombinationSpliterator(Combiner combiner, BigInteger from, BigInteger to, IndexPermutation permutation) {
+        this.combiner = Objects.requireNonNull(combiner);
+        this.permutation = permutation;
+        this.longMode = to.bitLength() < 64;
+        if (longMode) {
+            this.pos = from.longValue();
+            this.end = to.longValue();
+        } else {
+            this.bigPos = Objects.requireNonNull(from);
+            this.bigEnd = to;
+        }
+    }
+
+    /**
+     * Конструктор сплитератора, перебирающего номера в long
+     *
+     * @param combiner    комбайнер
+     * @param from        номер первой комбинации
+     * @param to          номер комбинации, следующей за последней
+     * @param permutation перестановка номеров комбинаций, null, если комбинации перебираются по порядку
+     */
+    private CombinationSpliterator(Combiner combiner, long from, long to, IndexPermutation permutation) {
+        this.combiner = combiner;
+        this.permutation = permutation;
+        this.longMode = true;
+        this.pos = from;
+        this.end = to;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super List<Object>> action) {
+        Objects.requireNonNull(action);
+        if (longMode) {
+            if (pos >= end)
+                return false;
+            long combinationNumber = permutation == null ? pos : permutation.permute(pos);
+            pos++;
+            action.accept(combiner.deconv(combinationNumber));
+        } else {
+            if (bigPos.compareTo(bigEnd) >= 0)
+                return false;
+            action.accept(combiner.deconv(permutation == null ? bigPos : permutation.permute(bigPos)));
+            bigPos = bigPos.add(BigInteger.ONE);
+        }
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super List<Object>> action) {
+        Objects.requireNonNull(action);
+        if (permutation != null) {
+            while (tryAdvance(action)) ;
+            return;
+        }
+        // подряд идущие комбинации быстрее получать курсором, чем разворачивать каждую заново
+        if (longMode) {
+            if (pos >= end)
+                return;
+            CombinationCursor cursor = new CombinationCursor(combiner, BigInteger.valueOf(pos),
+                    BigInteger.valueOf(end - pos));
+            pos = end;
+            forEachRemaining(cursor, action);
+            return;
+        }
+        // курсор перебирает не больше Long.MAX_VALUE комбинаций, поэтому диапазон обходится частями
+        BigInteger maxPiece = BigInteger.valueOf(Long.MAX_VALUE);
+        while (bigPos.compareTo(bigEnd) < 0) {
+            BigInteger piece = bigEnd.subtract(bigPos).min(maxPiece);
+            CombinationCursor cursor = new CombinationCursor(combiner, bigPos, piece);
+            bigPos = bigPos.add(piece);
+            forEachRemaining(cursor, action);
+        }
+    }
+
+    /**
+     * Обработать оставшиеся комбинации курсора
+     *
+     * @param cursor курсор
+     * @param action обработчик комбинации
+     */
+    private static void forEachRemaining(CombinationCursor cursor, Consumer<? super List<Object>> action) {
+        while (cursor.next())
+            action.accept(cursor.toList());
+    }
+
+    @Override
+    public Spliterator<List<Object>> trySplit() {
+        if (longMode) {
+            long mid = pos + (end - pos) / 2;
+            if (mid <= pos)
+                return null;
+            CombinationSpliterator prefix = new CombinationSpliterator(combiner, pos, mid, permutation);
+            pos = mid;
+            return prefix;
+        }
+        BigInteger mid = bigPos.add(bigEnd.subtract(bigPos).shiftRight(1));
+        if (mid.compareTo(bigPos) <= 0)
+            return null;
+        CombinationSpliterator prefix = new CombinationSpliterator(combiner, bigPos, mid, permutation);
+        bigPos = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        if (longMode)
+            return Math.max(end - pos, 0);
+        BigInteger size = bigEnd.subtract(bigPos);
+        return size.bitLength() < 64 ? Math.max(size.longValue(), 0) : Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        int characteristics = ORDERED | NONNULL | IMMUTABLE;
+        if (longMode || bigEnd.subtract(bigPos).bitLength() < 64)
+            characteristics |= SIZED | SUBSIZED;
+        return characteristics;
+    }
+}
@@ -1,9 +1,11 @@
 package center.buran.jcollections.combiners;
 
 
+import center.buran.jcollections.AtomicBigInteger;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import center.buran.jcollections.combiners.metrics.CombinerMetricsListener;
 import center.buran.jcollections.combiners.ranges.EmptyRange;
 import center.buran.jcollections.combiners.ranges.Range;
 import center.buran.jcollections.combiners.ranges.RangeBuilder;
@@ -16,7 +18,12 @@ import center.buran.jcollections.combiners.ranges.vector.Vector3dRange;
 import java.math.BigInteger;
 import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Класс комбайнера(перебирает все комбинации имеют по одному любому значению из каждого диапазона)
@@ -30,10 +37,59 @@ public class Combiner {
     @JsonIgnore
     BigInteger combinationCnt;
     /**
-     * Текущее положение в переборе комбинаций
+     * Текущее положение в переборе комбинаций, если количество комбинаций помещается в long
      */
     @JsonIgnore
-    BigInteger combinationLoopPos;
+    private final AtomicLong longCombinationLoopPos = new AtomicLong();
+    /**
+     * Текущее положение в переборе комбинаций, если количество комбинаций не помещается в long
+     */
+    @JsonIgnore
+    private final AtomicBigInteger bigCombinationLoopPos = new AtomicBigInteger(BigInteger.ZERO);
+    /**
+     * Флаг, помещаются ли номера комбинаций в long (тогда свёртка и развёртка
+     * считаются в long без промежуточных BigInteger)
+     */
+    @JsonIgnore
+    private boolean longConv;
+    /**
+     * Номера разрядов свёртки по номерам диапазонов (-1 для пустых и запрещённых диапазонов)
+     */
+    @JsonIgnore
+    private int[] rangeDigits;
+    /**
+     * Основания разрядов свёртки (кол-во шагов диапазона + 1) в порядке возрастания значимости
+     */
+    @JsonIgnore
+    private int[] radices;
+    /**
+     * Веса разрядов свёртки (произведения оснований всех младших разрядов),
+     * 0, если вес не помещается в long
+     */
+    @JsonIgnore
+    private long[] longPlaceValues;
+    /**
+     * Дерево произведений оснований разрядов: в узле node, отвечающем за разряды [lo, hi),
+     * хранится произведение их оснований, его потомки 2 * node и 2 * node + 1 отвечают за
+     * разряды [lo, mid) и [mid, hi), где mid = (lo + hi) / 2
+     */
+    @JsonIgnore
+    private BigInteger[] radixProducts;
+    /**
+     * Слушатель метрик, null, если метрики не собираются
+     */
+    @JsonIgnore
+    private volatile CombinerMetricsListener metricsListener;
+    /**
+     * Время построения таблицы наборов комбинаций, нс, -1, если таблица не строилась
+     */
+    @JsonIgnore
+    private volatile long tableBuildNanos = -1;
+    /**
+     * Кол-во элементов таблицы наборов комбинаций
+     */
+    @JsonIgnore
+    private volatile long tableSize;
     /**
      * список диапазонов значений
      */
@@ -131,10 +187,116 @@ public class Combiner {
      * инициализировать переборщик
      */
     public void initCombinationLoop() {
-        combinationLoopPos = BigInteger.ZERO;
+        resetCombinationLoopPos();
+        initConv();
         calculateCombinationCnt();
     }
 
+    /**
+     * Подготовить свёртку и развёртку: рассчитать основания и веса разрядов, дерево
+     * произведений оснований и определить, можно ли считать свёртку и развёртку в long
+     * (это возможно, если количество комбинаций диапазонов занимает меньше 63 бит)
+     */
+    protected void initConv() {
+        rangeDigits = new int[ranges.size()];
+        int digitCnt = 0;
+        for (int i = 0; i < ranges.size(); i++) {
+            Range range = ranges.get(i);
+            rangeDigits[i] = !range.isEmpty() && range.isEnabled() ? digitCnt++ : -1;
+        }
+        radices = new int[digitCnt];
+        longPlaceValues = new long[digitCnt];
+        long placeValue = 1;
+        for (int i = 0; i < ranges.size(); i++) {
+            int digit = rangeDigits[i];
+            if (digit < 0)
+                continue;
+            radices[digit] = ranges.get(i).getStepCnt() + 1;
+            longPlaceValues[digit] = placeValue;
+            placeValue = placeValue != 0 && placeValue <= Long.MAX_VALUE / radices[digit] ?
+                    placeValue * radices[digit] : 0;
+        }
+        radixProducts = new BigInteger[Math.max(4 * digitCnt, 1)];
+        if (digitCnt > 0)
+            buildRadixProducts(1, 0, digitCnt);
+        longConv = false;
+        longConv = conv(getMax()).add(BigInteger.ONE).bitLength() < 63;
+    }
+
+    /**
+     * Построить дерево произведений оснований разрядов
+     *
+     * @param node номер узла
+     * @param lo   первый разряд узла
+     * @param hi   разряд, следующий за последним разрядом узла
+     */
+    private void buildRadixProducts(int node, int lo, int hi) {
+        if (hi - lo == 1) {
+            radixProducts[node] = BigInteger.valueOf(radices[lo]);
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        buildRadixProducts(2 * node, lo, mid);
+        buildRadixProducts(2 * node + 1, mid, hi);
+        radixProducts[node] = radixProducts[2 * node].multiply(radixProducts[2 * node + 1]);
+    }
+
+    /**
+     * Разложить число по разрядам свёртки: число делится один раз на произведение оснований
+     * младшей половины разрядов, после чего остаток и частное раскладываются рекурсивно.
+     * Так большое число раскладывается за время умножения, а не за квадратичное время
+     * последовательных делений на основания. Как только число помещается в long,
+     * оставшиеся разряды считаются последовательно в long
+     *
+     * @param value  число
+     * @param node   номер узла дерева произведений оснований
+     * @param lo     первый разряд узла
+     * @param hi     разряд, следующий за последним разрядом узла
+     * @param digits массив значений разрядов
+     */
+    private void decodeDigits(BigInteger value, int node, int lo, int hi, int[] digits) {
+        if (value.bitLength() < 63) {
+            long longValue = value.longValue();
+            for (int i = lo; i < hi; i++) {
+                digits[i] = (int) (longValue % radices[i]);
+                longValue = longValue / radices[i];
+            }
+            return;
+        }
+        if (hi - lo == 1) {
+            digits[lo] = value.mod(radixProducts[node]).intValue();
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        BigInteger[] qr = value.divideAndRemainder(radixProducts[2 * node]);
+        decodeDigits(qr[1], 2 * node, lo, mid, digits);
+        decodeDigits(qr[0], 2 * node + 1, mid, hi, digits);
+    }
+
+    /**
+     * Собрать число из разрядов свёртки: число старшей половины разрядов умножается на произведение
+     * оснований младшей половины и складывается с числом младшей половины (дерево произведений).
+     * Если произведение оснований узла помещается в long, разряды узла собираются в long
+     *
+     * @param node   номер узла дерева произведений оснований
+     * @param lo     первый разряд узла
+     * @param hi     разряд, следующий за последним разрядом узла
+     * @param digits массив значений разрядов
+     * @return число
+     */
+    private BigInteger encodeDigits(int node, int lo, int hi, int[] digits) {
+        if (radixProducts[node].bitLength() < 63) {
+            long value = 0;
+            for (int i = hi - 1; i >= lo; i--)
+                value = value * radices[i] + digits[i];
+            return BigInteger.valueOf(value);
+        }
+        int mid = (lo + hi) >>> 1;
+        return encodeDigits(2 * node + 1, mid, hi, digits)
+                .multiply(radixProducts[2 * node])
+                .add(encodeDigits(2 * node, lo, mid, digits));
+    }
+
     /**
      * Рассчитать количество комбинаций
      */
@@ -143,22 +305,126 @@ public class Combiner {
     }
 
 
+    /**
+     * Обнулить текущее положение в переборе комбинаций
+     */
+    protected void resetCombinationLoopPos() {
+        longCombinationLoopPos.set(0);
+        bigCombinationLoopPos.set(BigInteger.ZERO);
+    }
+
+    /**
+     * Перевести положение в переборе комбинаций в конец (комбинаций больше не будет)
+     */
+    void finishCombinationLoop() {
+        longCombinationLoopPos.set(combinationCnt.bitLength() < 64 ? combinationCnt.longValue() : Long.MAX_VALUE);
+        bigCombinationLoopPos.set(combinationCnt);
+    }
+
+    /**
+     * Проверить, помещается ли количество комбинаций в long (тогда положение в переборе хранится в long)
+     *
+     * @return флаг, помещается ли количество комбинаций в long
+     */
+    private boolean isLongLoop() {
+        return combinationCnt.bitLength() < 64;
+    }
+
+    /**
+     * Атомарно занять отрезок номеров комбинаций, если количество комбинаций помещается в long
+     *
+     * @param size желаемое кол-во комбинаций
+     * @return номер первой комбинации отрезка, -1, если комбинации закончились
+     */
+    private long claimLong(int size) {
+        long cnt = combinationCnt.longValue();
+        for (; ; ) {
+            long current = longCombinationLoopPos.get();
+            if (current >= cnt)
+                return -1;
+            if (longCombinationLoopPos.compareAndSet(current, current + Math.min(size, cnt - current)))
+                return current;
+        }
+    }
+
+    /**
+     * Атомарно занять отрезок номеров комбинаций, если количество комбинаций не помещается в long
+     *
+     * @param size желаемое кол-во комбинаций
+     * @return номер первой комбинации отрезка, null, если комбинации закончились
+     */
+    private BigInteger claimBig(int size) {
+        for (; ; ) {
+            BigInteger current = bigCombinationLoopPos.get();
+            if (current.compareTo(combinationCnt) >= 0)
+                return null;
+            BigInteger next = current.add(BigInteger.valueOf(size)).min(combinationCnt);
+            if (bigCombinationLoopPos.compareAndSet(current, next))
+                return current;
+        }
+    }
+
+    /**
+     * Атомарно занять отрезок из следующих по порядку комбинаций. Положение в переборе
+     * сдвигается на размер отрезка, поэтому {@link #getCombinationLoopPos()} по-прежнему показывает,
+     * сколько комбинаций уже выдано
+     *
+     * @param size желаемое кол-во комбинаций (последний отрезок может оказаться короче)
+     * @return отрезок комбинаций, null, если комбинации закончились
+     */
+    public CombinationChunk claimChunk(int size) {
+        if (size <= 0)
+            throw new AssertionError("chunk size " + size + " must be positive");
+        if (isLongLoop()) {
+            long start = claimLong(size);
+            if (start < 0)
+                return null;
+            return new CombinationChunk(
+                    this, BigInteger.valueOf(start), (int) Math.min(size, combinationCnt.longValue() - start)
+            );
+        }
+        BigInteger start = claimBig(size);
+        if (start == null)
+            return null;
+        return new CombinationChunk(this, start, combinationCnt.subtract(start).min(BigInteger.valueOf(size)).intValue());
+    }
+
+    /**
+     * Получить объект, занимающий отрезки комбинаций для одного обработчика с подбором размера
+     * отрезка по времени обработки
+     *
+     * @return объект, занимающий отрезки комбинаций
+     */
+    public CombinationChunkClaimer chunkClaimer() {
+        return new CombinationChunkClaimer(this);
+    }
+
+    /**
+     * Занять номер следующей комбинации
+     *
+     * @return номер следующей комбинации, null, если комбинации закончились
+     */
+    private BigInteger claimNext() {
+        if (isLongLoop()) {
+            long pos = claimLong(1);
+            return pos < 0 ? null : BigInteger.valueOf(pos);
+        }
+        return claimBig(1);
+    }
+
     /**
      * Получить следующую комбинацию (последний элемент - это номер комбинации)
      *
      * @return следующая комбинация, если она есть, null, если комбинации закончились
      */
     @JsonIgnore
-    public synchronized List<Object> getNextAsList() {
-        // System.out.println(Thread.currentThread().getName()+" "+"getNext from combiner "+combinationLoopPos);
-        // нужно переходить к следующему
-        if (this.combinationLoopPos.compareTo(combinationCnt) >= 0)
+    public List<Object> getNextAsList() {
+        BigInteger pos = claimNext();
+        if (pos == null)
             return new ArrayList<>();
-        List<Object> objects = deconv(combinationLoopPos);
-        objects.add(combinationLoopPos);
-        combinationLoopPos = combinationLoopPos.add(BigInteger.ONE);
-        // System.out.println(Thread.currentThread().getName()+" "+"getNext from end");
-        return new ArrayList<>(objects);
+        List<Object> objects = deconv(pos);
+        objects.add(pos);
+        return objects;
     }
 
     /**
@@ -167,23 +433,251 @@ public class Combiner {
      * @return следующая комбинация, если она есть, null, если комбинации закончились
      */
     @JsonIgnore
-    public synchronized Map<String, Object> getNextAsDict() {
-        // System.out.println(Thread.currentThread().getName()+" "+"getNext from combiner "+combinationLoopPos);
-        // нужно переходить к следующему
-
+    public Map<String, Object> getNextAsDict() {
         Map<String, Object> map = new HashMap<>();
-        if (this.combinationLoopPos.compareTo(combinationCnt) >= 0)
+        BigInteger pos = claimNext();
+        if (pos == null)
             return map;
-        List<Object> objects = deconv(combinationLoopPos);
+        List<Object> objects = deconv(pos);
         for (int i = 0; i < ranges.size(); i++) {
             map.put(ranges.get(i).getName(), objects.get(i));
         }
-        map.put("combinationLoopPos", combinationLoopPos);
-        combinationLoopPos = combinationLoopPos.add(BigInteger.ONE);
-        // System.out.println(Thread.currentThread().getName()+" "+"getNext from end");
+        map.put("combinationLoopPos", pos);
         return map;
     }
 
+    /**
+     * Создать запись для получения комбинаций с доступом к значениям по названиям диапазонов
+     * (после смены диапазонов запись нужно создать заново)
+     *
+     * @return запись комбинации
+     */
+    public CombinationRecord newRecord() {
+        String[] names = new String[ranges.size()];
+        for (int i = 0; i < names.length; i++)
+            names[i] = ranges.get(i).getName();
+        return new CombinationRecord(rangeDict, names);
+    }
+
+    /**
+     * Записать следующую комбинацию в запись, не создавая новых словарей и списков
+     *
+     * @param record запись комбинации
+     * @return флаг, получена ли комбинация, false, если комбинации закончились
+     */
+    public boolean getNextAsRecord(CombinationRecord record) {
+        if (record.size() != ranges.size())
+            throw new AssertionError("record has " + record.size() + " ranges, combiner has " + ranges.size());
+        if (isLongLoop()) {
+            // номер хранится в записи как long, BigInteger создаётся только по запросу
+            long pos = claimLong(1);
+            if (pos < 0)
+                return false;
+            if (longConv) {
+                CombinerMetricsListener listener = metricsListener;
+                long start = listener == null ? 0 : System.nanoTime();
+                deconvInto(pos, record.values);
+                if (listener != null)
+                    listener.onDeconv(System.nanoTime() - start);
+            } else {
+                fillRecord(record, deconv(pos));
+            }
+            record.setPosition(pos);
+            return true;
+        }
+        BigInteger pos = claimBig(1);
+        if (pos == null)
+            return false;
+        fillRecord(record, deconv(pos));
+        record.setPosition(pos);
+        return true;
+    }
+
+    /**
+     * Записать значения комбинации в запись
+     *
+     * @param record  запись комбинации
+     * @param objects значения комбинации
+     */
+    private static void fillRecord(CombinationRecord record, List<Object> objects) {
+        for (int i = 0; i < record.values.length; i++)
+            record.values[i] = objects.get(i);
+    }
+
+    /**
+     * Получить курсор, перебирающий все комбинации комбайнера
+     *
+     * @return курсор, перебирающий все комбинации комбайнера
+     */
+    public CombinationCursor cursor() {
+        return new CombinationCursor(this, BigInteger.ZERO, combinationCnt);
+    }
+
+    /**
+     * Получить курсор, перебирающий заданное кол-во комбинаций, начиная с заданного номера
+     *
+     * @param from  номер первой комбинации (от 0 до кол-ва комбинаций)
+     * @param count кол-во комбинаций
+     * @return курсор
+     */
+    public CombinationCursor cursor(BigInteger from, BigInteger count) {
+        if (from.signum() < 0 || from.compareTo(combinationCnt) > 0)
+            throw new AssertionError("cursor(): from " + from + " is out of [0, " + combinationCnt + "]");
+        if (count.signum() < 0)
+            throw new AssertionError("cursor(): count " + count + " must not be negative");
+        return new CombinationCursor(this, from, count.min(combinationCnt.subtract(from)));
+    }
+
+    /**
+     * Параллельно обработать все комбинации: каждая комбинация обрабатывается отдельной задачей
+     * (по умолчанию на виртуальном потоке, если они есть в JVM), кол-во одновременно обрабатываемых
+     * комбинаций ограничено, результаты передаются приёмнику по одному, по мере готовности.
+     * Если обработчик бросил исключение, новые комбинации не запускаются, а исключение
+     * пробрасывается после завершения запущенных (проверяемое - обёрнутым в CompletionException)
+     *
+     * @param evaluator обработчик комбинации
+     * @param sink      приёмник результатов (вызывается под блокировкой)
+     * @param options   параметры обработки
+     * @param <R>       тип результата
+     * @return флаг, обработаны ли все комбинации (false, если обработка отменена или вышло время)
+     */
+    public <R> boolean evaluateAll(Function<List<Object>, R> evaluator, Consumer<R> sink, EvaluationOptions options) {
+        return CombinationEvaluator.evaluateAll(this, evaluator, sink, options);
+    }
+
+    /**
+     * Параллельно обработать все комбинации с параметрами по умолчанию
+     *
+     * @param evaluator обработчик комбинации
+     * @param sink      приёмник результатов (вызывается под блокировкой)
+     * @param <R>       тип результата
+     * @return флаг, обработаны ли все комбинации
+     */
+    public <R> boolean evaluateAll(Function<List<Object>, R> evaluator, Consumer<R> sink) {
+        return evaluateAll(evaluator, sink, new EvaluationOptions());
+    }
+
+    /**
+     * Получить итератор по сплошной части комбинаций. Части зависят только от диапазонов комбайнера,
+     * поэтому перебор можно разделить между процессами без координатора: каждый берёт свою часть
+     *
+     * @param shardIndex номер части, от 0 до shardCount - 1
+     * @param shardCount кол-во частей
+     * @return итератор по комбинациям части
+     */
+    public Iterator<List<Object>> shard(int shardIndex, int shardCount) {
+        return shard(shardIndex, shardCount, ShardMode.CONTIGUOUS);
+    }
+
+    /**
+     * Получить итератор по части комбинаций. Части не пересекаются, вместе покрывают все комбинации
+     * и зависят только от диапазонов комбайнера, поэтому перебор можно разделить между процессами
+     * без координатора: каждый берёт свою часть
+     *
+     * @param shardIndex номер части, от 0 до shardCount - 1
+     * @param shardCount кол-во частей
+     * @param mode       способ деления номеров между частями
+     * @return итератор по комбинациям части
+     */
+    public Iterator<List<Object>> shard(int shardIndex, int shardCount, ShardMode mode) {
+        if (shardCount <= 0)
+            throw new AssertionError("shardCount " + shardCount + " must be positive");
+        if (shardIndex < 0 || shardIndex >= shardCount)
+            throw new AssertionError("shardIndex " + shardIndex + " is out of [0, " + shardCount + ")");
+        BigInteger index = BigInteger.valueOf(shardIndex);
+        BigInteger count = BigInteger.valueOf(shardCount);
+        CombinationCursor cursor;
+        switch (Objects.requireNonNull(mode)) {
+            case CONTIGUOUS:
+                BigInteger from = combinationCnt.multiply(index).divide(count);
+                BigInteger to = combinationCnt.multiply(index.add(BigInteger.ONE)).divide(count);
+                cursor = new CombinationCursor(this, from, to.subtract(from));
+                break;
+            case INTERLEAVED:
+                BigInteger size = combinationCnt.compareTo(index) <= 0 ? BigInteger.ZERO :
+                        combinationCnt.subtract(index).add(count).subtract(BigInteger.ONE).divide(count);
+                cursor = new CombinationCursor(this, index, size, count);
+                break;
+            default:
+                throw new AssertionError("unknown shard mode " + mode);
+        }
+        return new Iterator<>() {
+            /**
+             * Флаг, сдвинут ли курсор на комбинацию, которая ещё не выдана
+             */
+            private boolean ready;
+
+            @Override
+            public boolean hasNext() {
+                if (!ready)
+                    ready = cursor.next();
+                return ready;
+            }
+
+            @Override
+            public List<Object> next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                ready = false;
+                return cursor.toList();
+            }
+        };
+    }
+
+    /**
+     * Развернуть подряд идущие комбинации по столбцам: для примитивных диапазонов значения
+     * возвращаются массивами примитивов, для векторных - плоскими массивами координат
+     *
+     * @param start номер первой комбинации
+     * @param count кол-во комбинаций
+     * @return пакет развёрнутых комбинаций
+     */
+    public CombinationBatch deconvBatch(BigInteger start, int count) {
+        return new CombinationBatch(this, start, count);
+    }
+
+    /**
+     * Получить курсор, перебирающий все комбинации комбайнера в порядке кода Грея:
+     * соседние комбинации отличаются одним шагом одного диапазона
+     *
+     * @return курсор перебора в порядке кода Грея
+     */
+    public GrayCombinationCursor grayCursor() {
+        return new GrayCombinationCursor(this);
+    }
+
+    /**
+     * Получить последовательный поток всех комбинаций комбайнера
+     *
+     * @return поток комбинаций
+     */
+    public Stream<List<Object>> stream() {
+        return StreamSupport.stream(new CombinationSpliterator(this, BigInteger.ZERO, combinationCnt), false);
+    }
+
+    /**
+     * Получить параллельный поток всех комбинаций комбайнера. Комбинации делятся между потоками
+     * по отрезкам номеров, без общей блокировки
+     *
+     * @return поток комбинаций
+     */
+    public Stream<List<Object>> parallelStream() {
+        return StreamSupport.stream(new CombinationSpliterator(this, BigInteger.ZERO, combinationCnt), true);
+    }
+
+    /**
+     * Получить поток всех комбинаций комбайнера в псевдослучайном порядке: каждая комбинация
+     * встречается ровно один раз, порядок определяется зерном. Поток можно сделать параллельным
+     *
+     * @param seed зерно
+     * @return поток комбинаций в псевдослучайном порядке
+     */
+    public Stream<List<Object>> shuffledStream(long seed) {
+        return StreamSupport.stream(new CombinationSpliterator(
+                this, BigInteger.ZERO, combinationCnt, new IndexPermutation(combinationCnt, seed)
+        ), false);
+    }
+
     /**
      * Получить список имён разрешённых интервалов
      *
@@ -204,20 +698,95 @@ public class Combiner {
      * @return следующая комбинация
      */
     public List<Object> deconv(BigInteger combinationNumber) {
-        List<Object> res = new LinkedList<>();
-        for (Range range : ranges) {
-            if (!range.isEmpty()) {
-                if (!range.isEnabled())
-                    res.add(range.getCurrentValue());
-                else {
-                    combinationNumber = range.pullFrom(combinationNumber, res);
-                }
+        if (longConv && combinationNumber.signum() >= 0 && combinationNumber.bitLength() < 64)
+            return deconv(combinationNumber.longValue());
+        CombinerMetricsListener listener = metricsListener;
+        if (listener == null)
+            return deconvBig(combinationNumber);
+        long start = System.nanoTime();
+        List<Object> res = deconvBig(combinationNumber);
+        listener.onDeconv(System.nanoTime() - start);
+        return res;
+    }
+
+    /**
+     * Преобразование номер комбинации в комбинацию в BigInteger
+     *
+     * @param combinationNumber номер комбинации
+     * @return комбинация
+     */
+    private List<Object> deconvBig(BigInteger combinationNumber) {
+        int[] digits = new int[radices.length];
+        if (radices.length > 0)
+            decodeDigits(combinationNumber, 1, 0, radices.length, digits);
+        List<Object> res = new ArrayList<>(ranges.size() + 1);
+        for (int i = 0; i < ranges.size(); i++) {
+            Range range = ranges.get(i);
+            int digit = rangeDigits[i];
+            if (digit >= 0)
+                res.add(range.getValue(digits[digit]));
+            else
+                res.add(range.isEmpty() ? null : range.getCurrentValue());
+        }
+        return res;
+    }
+
+    /**
+     * Преобразование номер комбинации в комбинацию без промежуточных BigInteger
+     *
+     * @param combinationNumber номер комбинации
+     * @return следующая комбинация
+     */
+    public List<Object> deconv(long combinationNumber) {
+        CombinerMetricsListener listener = metricsListener;
+        if (listener == null)
+            return deconvLong(combinationNumber);
+        long start = System.nanoTime();
+        List<Object> res = deconvLong(combinationNumber);
+        listener.onDeconv(System.nanoTime() - start);
+        return res;
+    }
+
+    /**
+     * Преобразование номер комбинации в комбинацию в long
+     *
+     * @param combinationNumber номер комбинации
+     * @return комбинация
+     */
+    private List<Object> deconvLong(long combinationNumber) {
+        // лишнее место под номер комбинации, который добавляет getNextAsList()
+        List<Object> res = new ArrayList<>(ranges.size() + 1);
+        for (int i = 0; i < ranges.size(); i++) {
+            Range range = ranges.get(i);
+            int digit = rangeDigits[i];
+            if (digit >= 0) {
+                // разряды считаются по весам независимо друг от друга, а не цепочкой делений
+                long placeValue = longPlaceValues[digit];
+                res.add(range.getValue(placeValue == 0 ? 0 : (int) (combinationNumber / placeValue % radices[digit])));
             } else
-                res.add(null);
+                res.add(range.isEmpty() ? null : range.getCurrentValue());
         }
         return res;
     }
 
+    /**
+     * Записать комбинацию с заданным номером в массив значений диапазонов
+     *
+     * @param combinationNumber номер комбинации
+     * @param values            массив значений диапазонов
+     */
+    private void deconvInto(long combinationNumber, Object[] values) {
+        for (int i = 0; i < values.length; i++) {
+            Range range = ranges.get(i);
+            int digit = rangeDigits[i];
+            if (digit >= 0) {
+                long placeValue = longPlaceValues[digit];
+                values[i] = range.getValue(placeValue == 0 ? 0 : (int) (combinationNumber / placeValue % radices[digit]));
+            } else
+                values[i] = range.isEmpty() ? null : range.getCurrentValue();
+        }
+    }
+
     /**
      * Преобразование номер комбинации в комбинацию
      *
@@ -244,12 +813,69 @@ public class Combiner {
      * @return номер комбинации
      */
     public BigInteger conv(List<Object> combination) {
-        BigInteger value = BigInteger.valueOf(0);
-        Iterator it = new LinkedList<>(combination).descendingIterator();
+        if (longConv)
+            return BigInteger.valueOf(convToLong(combination));
+        CombinerMetricsListener listener = metricsListener;
+        if (listener == null)
+            return convBig(combination);
+        long start = System.nanoTime();
+        BigInteger res = convBig(combination);
+        listener.onConv(System.nanoTime() - start);
+        return res;
+    }
+
+    /**
+     * Узнать номер комбинации по её значению в BigInteger
+     *
+     * @param combination комбинация
+     * @return номер комбинации
+     */
+    private BigInteger convBig(List<Object> combination) {
+        int[] digits = new int[radices.length];
+        ListIterator<Object> it = combination.listIterator(combination.size());
+        for (int i = ranges.size() - 1; i >= 0; i--) {
+            Range range = ranges.get(i);
+            if (!range.isEmpty()) {
+                Object object = it.previous();
+                if (range.isEnabled()) {
+                    digits[rangeDigits[i]] = range.getStepNum(Objects.requireNonNull(object));
+                }
+            }
+        }
+        return radices.length == 0 ? BigInteger.ZERO : encodeDigits(1, 0, radices.length, digits);
+    }
+
+    /**
+     * Узнать номер комбинации по её значению без промежуточных BigInteger
+     *
+     * @param combination комбинация
+     * @return номер комбинации
+     */
+    public long convToLong(List<Object> combination) {
+        if (!longConv)
+            throw new ArithmeticException("combination number does not fit in long: " + combinationCnt);
+        CombinerMetricsListener listener = metricsListener;
+        if (listener == null)
+            return convLong(combination);
+        long start = System.nanoTime();
+        long res = convLong(combination);
+        listener.onConv(System.nanoTime() - start);
+        return res;
+    }
+
+    /**
+     * Узнать номер комбинации по её значению в long
+     *
+     * @param combination комбинация
+     * @return номер комбинации
+     */
+    private long convLong(List<Object> combination) {
+        long value = 0;
+        ListIterator<Object> it = combination.listIterator(combination.size());
         for (int i = 0; i < ranges.size(); i++) {
             Range range = ranges.get(ranges.size() - i - 1);
             if (!range.isEmpty()) {
-                Object object = it.next();
+                Object object = it.previous();
                 if (range.isEnabled()) {
                     value = range.pushTo(value, object);
                 }
@@ -258,6 +884,16 @@ public class Combiner {
         return value;
     }
 
+    /**
+     * Получить флаг, помещаются ли номера комбинаций в long
+     *
+     * @return флаг, помещаются ли номера комбинаций в long
+     */
+    @JsonIgnore
+    public boolean isLongConv() {
+        return longConv;
+    }
+
     /**
      * Узнать номер комбинации по её значению
      *
@@ -489,6 +1125,45 @@ public class Combiner {
         initCombinationLoop();
     }
 
+    /**
+     * Задать слушатель метрик. Если таблица наборов комбинаций уже построена (в конструкторе),
+     * слушатель сразу получает её построение
+     *
+     * @param metricsListener слушатель метрик, null, чтобы не собирать метрики
+     */
+    @JsonIgnore
+    public void setMetricsListener(CombinerMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+        long nanos = tableBuildNanos;
+        if (metricsListener != null && nanos >= 0)
+            metricsListener.onTableBuilt(this, nanos, tableSize);
+    }
+
+    /**
+     * Получить слушатель метрик
+     *
+     * @return слушатель метрик, null, если метрики не собираются
+     */
+    @JsonIgnore
+    public CombinerMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    /**
+     * Запомнить построение таблицы наборов комбинаций и сообщить о нём слушателю метрик
+     *
+     * @param startNanos момент начала построения, нс
+     * @param size       кол-во элементов таблицы
+     */
+    protected void reportTableBuilt(long startNanos, long size) {
+        long nanos = System.nanoTime() - startNanos;
+        tableSize = size;
+        tableBuildNanos = nanos;
+        CombinerMetricsListener listener = metricsListener;
+        if (listener != null)
+            listener.onTableBuilt(this, nanos, size);
+    }
+
     /**
      * Получить кол-во комбинаций
      *
@@ -504,7 +1179,7 @@ public class Combiner {
      * @return Текущее положение в переборе комбинаций
      */
     public BigInteger getCombinationLoopPos() {
-        return combinationLoopPos;
+        return isLongLoop() ? BigInteger.valueOf(longCombinationLoopPos.get()) : bigCombinationLoopPos.get();
     }
 
     /**
@@ -519,7 +1194,8 @@ public class Combiner {
             throw new AssertionError("значение " + pos + " больше максимального: "
                     + combinationCnt.subtract(BigInteger.ONE)
             );
-        combinationLoopPos = pos;
+        longCombinationLoopPos.set(pos.longValue());
+        bigCombinationLoopPos.set(pos);
     }
 
     /**
@@ -562,7 +1238,7 @@ public class Combiner {
      * @return строковое представление объекта
      */
     protected String getString() {
-        return combinationCnt + ", " + combinationLoopPos + ", " + ranges.size();
+        return combinationCnt + ", " + getCombinationLoopPos() + ", " + ranges.size();
     }
 
 
@@ -575,7 +1251,7 @@ public class Combiner {
 
         if (!Objects.equals(combinationCnt, combiner.combinationCnt))
             return false;
-        if (!Objects.equals(combinationLoopPos, combiner.combinationLoopPos))
+        if (!Objects.equals(getCombinationLoopPos(), combiner.getCombinationLoopPos()))
             return false;
         if (!Objects.equals(ranges, combiner.ranges)) return false;
         return Objects.equals(rangeDict, combiner.rangeDict);
@@ -584,7 +1260,7 @@ public class Combiner {
     @Override
     public int hashCode() {
         int result = combinationCnt.hashCode();
-        result = 31 * result + combinationLoopPos.hashCode();
+        result = 31 * result + getCombinationLoopPos().hashCode();
         result = 31 * result + ranges.hashCode();
         result = 31 * result + rangeDict.hashCode();
         return result;
@@ -0,0 +1,528 @@
+package center.buran.jcollections.combiners;
+
+import center.buran.jcollections.combiners.ranges.Range;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Комбайнер с ограничениями: перебирает только комбинации, удовлетворяющие заданным условиям
+ * на значения отдельных диапазонов и на наборы значений нескольких диапазонов.
+ * <p>
+ * Перебор идёт поиском с возвратом от старшего разряда свёртки (последнего разрешённого диапазона)
+ * к младшему, поэтому допустимые комбинации выдаются в порядке возрастания их номеров
+ * {@link Combiner#deconv(BigInteger)}. Условие проверяется, как только заданы значения всех его
+ * диапазонов, и если оно не выполнено, всё поддерево комбинаций с таким началом пропускается целиком.
+ * <p>
+ * Методы, работающие с номерами комбинаций (deconv, conv, cursor, getCombinationCnt и т.д.),
+ * по-прежнему работают со всеми комбинациями диапазонов, ограничения учитывают
+ * {@link #iterator()}, {@link #stream()}, {@link #parallelStream()} и {@link #getValidCombinationCnt()}
+ */
+public class ConstrainedCombiner extends Combiner {
+    /**
+     * Ограничения
+     */
+    @JsonIgnore
+    private final List<Constraint> constraints = new ArrayList<>();
+    /**
+     * План поиска, построенный по текущим диапазонам и ограничениям, null, если его нужно построить заново
+     */
+    @JsonIgnore
+    private volatile SearchPlan plan;
+    /**
+     * Кол-во допустимых комбинаций, null, если оно ещё не посчитано
+     */
+    @JsonIgnore
+    private volatile BigInteger validCombinationCnt;
+
+    /**
+     * Ограничение на значения нескольких диапазонов
+     */
+    private static class Constraint {
+        /**
+         * Условие, получает значения диапазонов в порядке rangeIndexes
+         */
+        private final Predicate<List<Object>> predicate;
+        /**
+         * Номера диапазонов
+         */
+        private final int[] rangeIndexes;
+
+        /**
+         * Конструктор ограничения
+         *
+         * @param predicate    условие
+         * @param rangeIndexes номера диапазонов
+         */
+        private Constraint(Predicate<List<Object>> predicate, int[] rangeIndexes) {
+            this.predicate = predicate;
+            this.rangeIndexes = rangeIndexes;
+        }
+    }
+
+    /**
+     * План поиска: разряды свёртки и ограничения, привязанные к разрядам
+     */
+    private static class SearchPlan {
+        /**
+         * Номера диапазонов разрядов свёртки в порядке возрастания значимости
+         */
+        private final int[] digitRangeIndexes;
+        /**
+         * Основания разрядов
+         */
+        private final int[] radices;
+        /**
+         * Ограничения, которые можно проверить после задания значения разряда
+         * (самый младший разряд среди их диапазонов)
+         */
+        private final Constraint[][] digitConstraints;
+        /**
+         * Ограничения, не зависящие от разрядов (на запрещённые и пустые диапазоны)
+         */
+        private final Constraint[] fixedConstraints;
+        /**
+         * Флаги, есть ли ограничения на разрядах, не старше данного
+         */
+        private final boolean[] constrainedBelow;
+        /**
+         * Произведения оснований разрядов, младших данного
+         */
+        private final BigInteger[] lowProducts;
+        /**
+         * Значения диапазонов, не являющихся разрядами
+         */
+        private final Object[] fixedValues;
+
+        /**
+         * Конструктор плана
+         *
+         * @param ranges      диапазоны
+         * @param constraints ограничения
+         */
+        private SearchPlan(List<Range> ranges, List<Constraint> constraints) {
+            int[] rangeDigits = new int[ranges.size()];
+            fixedValues = new Object[ranges.size()];
+            int digitCnt = 0;
+            for (int i = 0; i < ranges.size(); i++) {
+                Range range = ranges.get(i);
+                if (!range.isEmpty() && range.isEnabled())
+                    rangeDigits[i] = digitCnt++;
+                else {
+                    rangeDigits[i] = -1;
+                    fixedValues[i] = range.isEmpty() ? null : range.getCurrentValue();
+                }
+            }
+            digitRangeIndexes = new int[digitCnt];
+            radices = new int[digitCnt];
+            for (int i = 0; i < ranges.size(); i++) {
+                if (rangeDigits[i] >= 0) {
+                    digitRangeIndexes[rangeDigits[i]] = i;
+                    radices[rangeDigits[i]] = ranges.get(i).getStepCnt() + 1;
+                }
+            }
+            List<List<Constraint>> byDigit = new ArrayList<>();
+            for (int i = 0; i < digitCnt; i++)
+                byDigit.add(new ArrayList<>());
+            List<Constraint> fixed = new ArrayList<>();
+            for (Constraint constraint : constraints) {
+                int digit = Integer.MAX_VALUE;
+                for (int rangeIdx : constraint.rangeIndexes) {
+                    if (rangeDigits[rangeIdx] >= 0)
+                        digit = Math.min(digit, rangeDigits[rangeIdx]);
+                }
+                if (digit == Integer.MAX_VALUE)
+                    fixed.add(constraint);
+                else
+                    byDigit.get(digit).add(constraint);
+            }
+            digitConstraints = new Constraint[digitCnt][];
+            constrainedBelow = new boolean[digitCnt];
+            lowProducts = new BigInteger[digitCnt + 1];
+            lowProducts[0] = BigInteger.ONE;
+            for (int i = 0; i < digitCnt; i++) {
+                digitConstraints[i] = byDigit.get(i).toArray(new Constraint[0]);
+                constrainedBelow[i] = digitConstraints[i].length > 0 || (i > 0 && constrainedBelow[i - 1]);
+                lowProducts[i + 1] = lowProducts[i].multiply(BigInteger.valueOf(radices[i]));
+            }
+            fixedConstraints = fixed.toArray(new Constraint[0]);
+        }
+    }
+
+    /**
+     * Ограничение с аргументами условия, которые перезаполняются при каждой проверке
+     */
+    private static class BoundConstraint {
+        /**
+         * Ограничение
+         */
+        private final Constraint constraint;
+        /**
+         * Аргументы условия
+         */
+        private final Object[] args;
+        /**
+         * Список поверх аргументов условия
+         */
+        private final List<Object> argList;
+
+        /**
+         * Конструктор ограничения с аргументами
+         *
+         * @param constraint ограничение
+         */
+        private BoundConstraint(Constraint constraint) {
+            this.constraint = constraint;
+            this.args = new Object[constraint.rangeIndexes.length];
+            this.argList = Arrays.asList(args);
+        }
+
+        /**
+         * Привязать аргументы к ограничениям
+         *
+         * @param constraintArr ограничения
+         * @return ограничения с аргументами
+         */
+        private static BoundConstraint[] bind(Constraint[] constraintArr) {
+            BoundConstraint[] res = new BoundConstraint[constraintArr.length];
+            for (int i = 0; i < res.length; i++)
+                res[i] = new BoundConstraint(constraintArr[i]);
+            return res;
+        }
+    }
+
+    /**
+     * Состояние поиска с возвратом: значения диапазонов и номера шагов разрядов.
+     * У каждого перебора своё состояние
+     */
+    private class Search {
+        /**
+         * План поиска
+         */
+        private final SearchPlan plan;
+        /**
+         * Диапазоны
+         */
+        private final Range[] rangeArr;
+        /**
+         * Текущие значения диапазонов
+         */
+        private final Object[] values;
+        /**
+         * Номера шагов разрядов
+         */
+        private final int[] stepNums;
+        /**
+         * Ограничения разрядов с аргументами
+         */
+        private final BoundConstraint[][] digitConstraints;
+        /**
+         * Ограничения, не зависящие от разрядов, с аргументами
+         */
+        private final BoundConstraint[] fixedConstraints;
+
+        /**
+         * Конструктор состояния поиска
+         */
+        private Search() {
+            this.plan = getPlan();
+            this.rangeArr = ranges.toArray(new Range[0]);
+            this.values = plan.fixedValues.clone();
+            this.stepNums = new int[plan.radices.length];
+            this.digitConstraints = new BoundConstraint[plan.digitConstraints.length][];
+            for (int i = 0; i < digitConstraints.length; i++)
+                digitConstraints[i] = BoundConstraint.bind(plan.digitConstraints[i]);
+            this.fixedConstraints = BoundConstraint.bind(plan.fixedConstraints);
+        }
+
+        /**
+         * Проверить ограничения
+         *
+         * @param constraintArr ограничения с аргументами
+         * @return флаг, выполнены ли все ограничения
+         */
+        private boolean check(BoundConstraint[] constraintArr) {
+            for (BoundConstraint bound : constraintArr) {
+                int[] rangeIndexes = bound.constraint.rangeIndexes;
+                for (int i = 0; i < rangeIndexes.length; i++)
+                    bound.args[i] = values[rangeIndexes[i]];
+                if (!bound.constraint.predicate.test(bound.argList))
+                    return false;
+            }
+            return true;
+        }
+
+        /**
+         * Задать номер шага разряда и проверить ограничения этого разряда
+         *
+         * @param digit   разряд
+         * @param stepNum номер шага
+         * @return флаг, выполнены ли ограничения разряда
+         */
+        private boolean assign(int digit, int stepNum) {
+            stepNums[digit] = stepNum;
+            int rangeIdx = plan.digitRangeIndexes[digit];
+            values[rangeIdx] = rangeArr[rangeIdx].getValue(stepNum);
+            return check(digitConstraints[digit]);
+        }
+
+        /**
+         * Посчитать кол-во допустимых продолжений комбинации, в которой заданы все разряды старше данного
+         *
+         * @param digit разряд
+         * @return кол-во допустимых продолжений
+         */
+        private BigInteger count(int digit) {
+            if (digit < 0)
+                return BigInteger.ONE;
+            // ниже ограничений нет: годятся все продолжения
+            if (!plan.constrainedBelow[digit])
+                return plan.lowProducts[digit + 1];
+            BigInteger cnt = BigInteger.ZERO;
+            for (int stepNum = 0; stepNum < plan.radices[digit]; stepNum++) {
+                if (assign(digit, stepNum))
+                    cnt = cnt.add(count(digit - 1));
+            }
+            return cnt;
+        }
+
+        /**
+         * Получить текущую комбинацию в виде списка (как {@link Combiner#deconv(BigInteger)})
+         *
+         * @return текущая комбинация
+         */
+        private List<Object> toList() {
+            List<Object> res = new ArrayList<>(values.length + 1);
+            Collections.addAll(res, values);
+            return res;
+        }
+    }
+
+    /**
+     * Итератор допустимых комбинаций
+     */
+    private class ValidIterator implements Iterator<List<Object>> {
+        /**
+         * Состояние поиска
+         */
+        private final Search search = new Search();
+        /**
+         * Текущий разряд поиска, равен кол-ву разрядов, когда перебор закончен
+         */
+        private int digit;
+        /**
+         * Флаг, найдена ли следующая комбинация, которая ещё не выдана
+         */
+        private boolean ready;
+
+        /**
+         * Конструктор итератора
+         */
+        private ValidIterator() {
+            int digitCnt = search.plan.radices.length;
+            if (!search.check(search.fixedConstraints)) {
+                digit = digitCnt;
+            } else if (digitCnt == 0) {
+                ready = true;
+                digit = 0;
+            } else {
+                digit = digitCnt - 1;
+                search.stepNums[digit] = -1;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (ready)
+                return true;
+            int digitCnt = search.plan.radices.length;
+            while (digit < digitCnt) {
+                int stepNum = search.stepNums[digit] + 1;
+                if (stepNum >= search.plan.radices[digit]) {
+                    digit++;
+                    continue;
+                }
+                if (!search.assign(digit, stepNum))
+                    continue;
+                if (digit == 0) {
+                    ready = true;
+                    return true;
+                }
+                digit--;
+                search.stepNums[digit] = -1;
+            }
+            return false;
+        }
+
+        @Override
+        public List<Object> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            ready = false;
+            return search.toList();
+        }
+    }
+
+    /**
+     * Конструктор комбайнера с ограничениями
+     *
+     * @param rangeCnt количество интервалов
+     */
+    public ConstrainedCombiner(int rangeCnt) {
+        super(rangeCnt);
+    }
+
+    /**
+     * Конструктор комбайнера с ограничениями
+     *
+     * @param ranges список интервалов
+     */
+    public ConstrainedCombiner(Range... ranges) {
+        super(ranges);
+    }
+
+    /**
+     * Конструктор комбайнера с ограничениями
+     *
+     * @param lst список интервалов
+     */
+    public ConstrainedCombiner(List<Range> lst) {
+        super(Objects.requireNonNull(lst));
+    }
+
+    /**
+     * инициализировать переборщик
+     */
+    @Override
+    public void initCombinationLoop() {
+        super.initCombinationLoop();
+        plan = null;
+        validCombinationCnt = null;
+    }
+
+    /**
+     * Добавить ограничение на значение диапазона
+     *
+     * @param rangeIdx  номер диапазона
+     * @param predicate условие на значение диапазона
+     * @return комбайнер
+     */
+    public ConstrainedCombiner addRangeConstraint(int rangeIdx, Predicate<Object> predicate) {
+        Objects.requireNonNull(predicate);
+        return addConstraint(values -> predicate.test(values.get(0)), rangeIdx);
+    }
+
+    /**
+     * Добавить ограничение на значения нескольких диапазонов
+     *
+     * @param predicate    условие, получает значения диапазонов в порядке rangeIndexes;
+     *                     список перезаполняется между проверками, сохранять его нельзя
+     * @param rangeIndexes номера диапазонов
+     * @return комбайнер
+     */
+    public synchronized ConstrainedCombiner addConstraint(Predicate<List<Object>> predicate, int... rangeIndexes) {
+        Objects.requireNonNull(predicate);
+        if (rangeIndexes.length == 0)
+            throw new AssertionError("addConstraint(): no range indexes");
+        for (int rangeIdx : rangeIndexes) {
+            if (rangeIdx < 0 || rangeIdx >= ranges.size())
+                throw new AssertionError("addConstraint(): range index " + rangeIdx + " is out of [0, " +
+                        ranges.size() + ")");
+        }
+        constraints.add(new Constraint(predicate, rangeIndexes.clone()));
+        plan = null;
+        validCombinationCnt = null;
+        return this;
+    }
+
+    /**
+     * Удалить все ограничения
+     */
+    public synchronized void clearConstraints() {
+        constraints.clear();
+        plan = null;
+        validCombinationCnt = null;
+    }
+
+    /**
+     * Получить план поиска, построив его при необходимости
+     *
+     * @return план поиска
+     */
+    private SearchPlan getPlan() {
+        SearchPlan current = plan;
+        if (current == null) {
+            synchronized (this) {
+                current = plan;
+                if (current == null) {
+                    current = new SearchPlan(ranges, constraints);
+                    plan = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Получить кол-во допустимых комбинаций. Считается один раз при первом вызове поиском с возвратом;
+     * поддеревья, в которых не осталось ограничений, не перебираются, а считаются произведением оснований
+     *
+     * @return кол-во допустимых комбинаций
+     */
+    @JsonIgnore
+    public BigInteger getValidCombinationCnt() {
+        BigInteger cnt = validCombinationCnt;
+        if (cnt == null) {
+            Search search = new Search();
+            cnt = search.check(search.fixedConstraints) ?
+                    search.count(search.plan.radices.length - 1) : BigInteger.ZERO;
+            validCombinationCnt = cnt;
+        }
+        return cnt;
+    }
+
+    /**
+     * Получить итератор допустимых комбинаций в порядке возрастания их номеров
+     *
+     * @return итератор допустимых комбинаций
+     */
+    public Iterator<List<Object>> iterator() {
+        return new ValidIterator();
+    }
+
+    /**
+     * Получить последовательный поток допустимых комбинаций в порядке возрастания их номеров
+     *
+     * @return поток допустимых комбинаций
+     */
+    @Override
+    public Stream<List<Object>> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+                iterator(), Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE
+        ), false);
+    }
+
+    /**
+     * Получить параллельный поток допустимых комбинаций
+     *
+     * @return поток допустимых комбинаций
+     */
+    @Override
+    public Stream<List<Object>> parallelStream() {
+        return stream().parallel();
+    }
+
+    /**
+     * Строковое представление объекта вида:
+     *
+     * @return "ConstrainedCombiner{getString()}"
+     */
+    @Override
+    public String toString() {
+        return "ConstrainedCombiner{" + getString() + '}';
+    }
+}
@@ -0,0 +1,116 @@
+package center.buran.jcollections.combiners;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Параметры параллельной обработки комбинаций {@link Combiner#evaluateAll}
+ */
+public class EvaluationOptions {
+    /**
+     * Максимальное кол-во одновременно обрабатываемых комбинаций по умолчанию
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+    /**
+     * Максимальное кол-во одновременно обрабатываемых комбинаций
+     */
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    /**
+     * Время, отведённое на обработку, null, если оно не ограничено
+     */
+    private Duration timeout;
+    /**
+     * Признак отмены обработки
+     */
+    private BooleanSupplier cancelled = () -> false;
+    /**
+     * Исполнитель задач, null, если нужно создать исполнитель на виртуальных потоках
+     */
+    private ExecutorService executor;
+
+    /**
+     * Задать максимальное кол-во одновременно обрабатываемых комбинаций
+     *
+     * @param maxInFlight максимальное кол-во одновременно обрабатываемых комбинаций
+     * @return параметры
+     */
+    public EvaluationOptions maxInFlight(int maxInFlight) {
+        if (maxInFlight <= 0)
+            throw new AssertionError("maxInFlight " + maxInFlight + " must be positive");
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * Задать время, отведённое на обработку
+     *
+     * @param timeout время, отведённое на обработку
+     * @return параметры
+     */
+    public EvaluationOptions timeout(Duration timeout) {
+        if (timeout.isNegative())
+            throw new AssertionError("timeout " + timeout + " is negative");
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * Задать признак отмены обработки: он проверяется перед запуском каждой комбинации
+     *
+     * @param cancelled признак отмены обработки
+     * @return параметры
+     */
+    public EvaluationOptions cancelled(BooleanSupplier cancelled) {
+        this.cancelled = Objects.requireNonNull(cancelled);
+        return this;
+    }
+
+    /**
+     * Задать исполнитель задач (он не будет закрыт после обработки)
+     *
+     * @param executor исполнитель задач
+     * @return параметры
+     */
+    public EvaluationOptions executor(ExecutorService executor) {
+        this.executor = Objects.requireNonNull(executor);
+        return this;
+    }
+
+    /**
+     * Получить максимальное кол-во одновременно обрабатываемых комбинаций
+     *
+     * @return максимальное кол-во одновременно обрабатываемых комбинаций
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Получить время, отведённое на обработку
+     *
+     * @return время, отведённое на обработку, null, если оно не ограничено
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Получить признак отмены обработки
+     *
+     * @return признак отмены обработки
+     */
+    public BooleanSupplier getCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Получить исполнитель задач
+     *
+     * @return исполнитель задач, null, если нужно создать исполнитель на виртуальных потоках
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+}
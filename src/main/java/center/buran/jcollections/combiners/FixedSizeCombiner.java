@@ -6,11 +6,16 @@ import center.buran.jcollections.combiners.ranges.Range;
 import java.math.BigInteger;
 import java.util.List;
 import java.util.Objects;
+import java.util.Spliterator;
 
 /**
  * Класс переборщика комбинаций перебирает наборы комбинаций из всех диапазонов
  * Иными словами, комбинации комбинаций. В каждой комбинации первого уровня не может быть одинаковых значений
  * в указанных диапазонах, а в остальных - может. При этом каждый набор имеет заданное кол-во комбинаций.
+ * <p>
+ * В комбинаторном режиме кол-ва наборов GammaCombiner считаются только для наборов заданного размера,
+ * а если диапазонов с неповторяемыми значениями нет, наборы нумеруются по комбинаторной системе
+ * счисления в порядке таблицы
  */
 public class FixedSizeCombiner extends GammaCombiner {
 
@@ -26,7 +31,37 @@ public class FixedSizeCombiner extends GammaCombiner {
      * @param ranges             список интервалов
      */
     public FixedSizeCombiner(int combinationSetSize, Range... ranges) {
-        super(ranges);
+        this(combinationSetSize, false, ranges);
+    }
+
+    /**
+     * Конструктор хранителя интервалов
+     *
+     * @param combinationSetSize количество элементов в комбинации
+     * @param combinatorial      флаг комбинаторного режима: номера наборов рассчитываются без таблицы
+     * @param ranges             список интервалов
+     */
+    public FixedSizeCombiner(int combinationSetSize, boolean combinatorial, Range... ranges) {
+        super(combinatorial, ranges);
+        this.combinationSetSize = combinationSetSize;
+        initFixedSizeCombinationLoop();
+        for (int nonRepeatedRangeIndex : nonRepeatedRangeIndexes) {
+            if (ranges[nonRepeatedRangeIndex].getStepCnt() + 1 < combinationSetSize)
+                throw new AssertionError(ranges[nonRepeatedRangeIndex] +
+                        " has stepCnt less than fixed combination length=" + ranges.length
+                );
+        }
+    }
+
+    /**
+     * Конструктор хранителя интервалов
+     *
+     * @param combinationSetSize количество элементов в комбинации
+     * @param tableStorage       способ хранения таблицы (она строится в конструкторе)
+     * @param ranges             список интервалов
+     */
+    public FixedSizeCombiner(int combinationSetSize, TableStorage tableStorage, Range... ranges) {
+        super(tableStorage, ranges);
         this.combinationSetSize = combinationSetSize;
         initFixedSizeCombinationLoop();
         for (int nonRepeatedRangeIndex : nonRepeatedRangeIndexes) {
@@ -44,7 +79,37 @@ public class FixedSizeCombiner extends GammaCombiner {
      * @param lst                список интервалов
      */
     public FixedSizeCombiner(int combinationSetSize, List<Range> lst) {
-        super(Objects.requireNonNull(lst));
+        this(combinationSetSize, false, lst);
+    }
+
+    /**
+     * Конструктор хранителя интервалов
+     *
+     * @param combinationSetSize количество элементов в комбинации
+     * @param combinatorial      флаг комбинаторного режима: номера наборов рассчитываются без таблицы
+     * @param lst                список интервалов
+     */
+    public FixedSizeCombiner(int combinationSetSize, boolean combinatorial, List<Range> lst) {
+        super(combinatorial, Objects.requireNonNull(lst));
+        this.combinationSetSize = combinationSetSize;
+        initFixedSizeCombinationLoop();
+        for (int nonRepeatedRangeIndex : nonRepeatedRangeIndexes) {
+            if (ranges.get(nonRepeatedRangeIndex).getStepCnt() + 1 < combinationSetSize)
+                throw new AssertionError(ranges.get(nonRepeatedRangeIndex) +
+                        " has stepCnt less than fixed combination length=" + ranges.size()
+                );
+        }
+    }
+
+    /**
+     * Конструктор хранителя интервалов
+     *
+     * @param combinationSetSize количество элементов в комбинации
+     * @param tableStorage       способ хранения таблицы (она строится в конструкторе)
+     * @param lst                список интервалов
+     */
+    public FixedSizeCombiner(int combinationSetSize, TableStorage tableStorage, List<Range> lst) {
+        super(tableStorage, Objects.requireNonNull(lst));
         this.combinationSetSize = combinationSetSize;
         initFixedSizeCombinationLoop();
         for (int nonRepeatedRangeIndex : nonRepeatedRangeIndexes) {
@@ -65,6 +130,30 @@ public class FixedSizeCombiner extends GammaCombiner {
         return combinationNumber.bitCount() == combinationSetSize && super.checkCombination(combinationNumber);
     }
 
+    /**
+     * Создать сплитератор чисел подходящих наборов комбинаций по возрастанию:
+     * строятся только наборы из combinationSetSize комбинаций
+     *
+     * @return сплитератор чисел наборов комбинаций
+     */
+    @Override
+    protected Spliterator<BigInteger> combinationSetSpliterator() {
+        return new CombinationSetSpliterator(
+                getNonRepeatedRangeValuesFromNumbers(), getBaseCombinationCnt(), nonRepeatedValueCnts(),
+                combinationSetSize, combinationSetSize
+        );
+    }
+
+    /**
+     * Получить кол-во комбинаций в каждом наборе
+     *
+     * @return кол-во комбинаций в каждом наборе
+     */
+    @Override
+    protected int getFixedCombinationSetSize() {
+        return combinationSetSize;
+    }
+
     /**
      * инициализировать гамма переборщик
      */
@@ -3,10 +3,8 @@ package center.buran.jcollections.combiners;
 import center.buran.jcollections.combiners.ranges.Range;
 
 import java.math.BigInteger;
-import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Objects;
+import java.util.*;
+import java.util.stream.Stream;
 
 /**
  * Класс переборщика комбинаций перебирает наборы комбинаций из всех диапазонов
@@ -15,12 +13,33 @@ import java.util.Objects;
  * стоят на первом месте и вставляются по очереди.
  * При этом не может быть одинаковых значений в указанных диапазонах, а в  остальных может
  * в указанных диапазонах, а в остальных - может.
+ * <p>
+ * В арифметическом режиме таблица не строится: каждому значению главного диапазона (как и в таблице,
+ * с номерами от 0 до stepCnt - 1) назначается своя комбинация остальных диапазонов в любом порядке,
+ * лишь бы значения в диапазонах с неповторяемыми значениями не повторялись. Номер набора - число
+ * со смешанным основанием, младшие разряды которого относятся к первому значению главного диапазона:
+ * у диапазона с повторяемыми значениями основание - кол-во его значений, а у диапазона с неповторяемыми
+ * значениями для i-го значения главного диапазона - кол-во ещё не занятых значений (r - i), и разряд -
+ * номер значения среди них. Поэтому кол-во наборов - произведение убывающих факториалов и степеней.
+ * Номер значения среди не занятых и значение по такому номеру находятся деревом Фенвика занятых значений,
+ * поэтому номер переводится в набор и обратно за O(k log r) для k назначений и r значений диапазона
+ * (плюс обнуление деревьев). В отличие от таблицы, в арифметическом режиме последняя комбинация
+ * диапазонов не исключается, а наборы нумеруются в другом порядке
  */
 public class ForEachCombiner extends FixedSizeCombiner {
     /**
      * Главный диапазон
      */
     public Range mainRange;
+    /**
+     * Кол-во значений главного диапазона, получающих комбинации (арифметический режим)
+     */
+    private int mainValueCnt;
+    /**
+     * Основания разрядов номера набора: для i-го значения главного диапазона и j-го диапазона
+     * основание хранится под индексом i * ranges.size() + j (арифметический режим)
+     */
+    private int[] assignmentRadices;
 
     /**
      * Конструктор хранителя интервалов
@@ -28,8 +47,20 @@ public class ForEachCombiner extends FixedSizeCombiner {
      * @param ranges список интервалов
      */
     public ForEachCombiner(Range... ranges) {
-        super(ranges.length - 1, Arrays.asList(ranges).subList(1, ranges.length));
+        this(false, ranges);
+    }
+
+    /**
+     * Конструктор хранителя интервалов
+     *
+     * @param arithmetic флаг арифметического режима: номера наборов рассчитываются без таблицы
+     * @param ranges     список интервалов
+     */
+    public ForEachCombiner(boolean arithmetic, Range... ranges) {
+        super(ranges.length - 1, arithmetic, Arrays.asList(ranges).subList(1, ranges.length));
         mainRange = ranges[0];
+        if (arithmetic)
+            initAssignmentCnt();
     }
 
     /**
@@ -38,35 +69,287 @@ public class ForEachCombiner extends FixedSizeCombiner {
      * @param lst список интервалов
      */
     public ForEachCombiner(List<Range> lst) {
-        super(lst.size() - 1, lst.subList(1, lst.size()));
-        mainRange = ranges.get(0);
+        this(false, lst);
+    }
+
+    /**
+     * Конструктор хранителя интервалов
+     *
+     * @param arithmetic флаг арифметического режима: номера наборов рассчитываются без таблицы
+     * @param lst        список интервалов
+     */
+    public ForEachCombiner(boolean arithmetic, List<Range> lst) {
+        super(lst.size() - 1, arithmetic, lst.subList(1, lst.size()));
+        mainRange = lst.get(0);
+        if (arithmetic)
+            initAssignmentCnt();
+    }
+
+    /**
+     * инициализировать переборщик c фиксированной длиной (в арифметическом режиме таблица не строится,
+     * а кол-во наборов рассчитывается после задания главного диапазона)
+     */
+    @Override
+    public void initFixedSizeCombinationLoop() {
+        if (!isCombinatorial()) {
+            super.initFixedSizeCombinationLoop();
+            return;
+        }
+        resetCombinationLoopPos();
+        nonRepeatedRangeIndexes = new ArrayList<>();
+        for (int i = 0; i < ranges.size(); i++) {
+            if (!ranges.get(i).isCanRepeatValue())
+                nonRepeatedRangeIndexes.add(i);
+        }
+    }
+
+    /**
+     * Рассчитать основания разрядов и кол-во наборов для арифметического режима
+     */
+    private void initAssignmentCnt() {
+        mainValueCnt = mainRange.getStepCnt();
+        assignmentRadices = new int[mainValueCnt * ranges.size()];
+        BigInteger cnt = BigInteger.ONE;
+        for (int i = 0; i < mainValueCnt; i++) {
+            for (int j = 0; j < ranges.size(); j++) {
+                Range range = ranges.get(j);
+                int valueCnt = !range.isEmpty() && range.isEnabled() ? range.getStepCnt() + 1 : 1;
+                // значения диапазона с неповторяемыми значениями выбираются из ещё не занятых
+                int radix = range.isCanRepeatValue() || range.isEmpty() ? valueCnt : Math.max(valueCnt - i, 0);
+                assignmentRadices[i * ranges.size() + j] = radix;
+                cnt = cnt.multiply(BigInteger.valueOf(radix));
+            }
+        }
+        combinationCnt = cnt;
     }
 
     /**
      * Узнать номер набора комбинаций по его значению
      *
      * @param combinationSets комбинации
-     * @return номер комбинации
+     * @return номер набора, -1, если такого набора нет
      */
     @Override
     public BigInteger gammaConv(List<List<?>> combinationSets) {
+        if (!isCombinatorial())
+            return super.gammaConv(combinationSets);
+        int rangeCnt = ranges.size();
+        int[] digits = new int[assignmentRadices.length];
+        int[][] assigned = new int[mainValueCnt][];
+        for (List<?> combination : Objects.requireNonNull(combinationSets)) {
+            if (combination.size() != rangeCnt + 1)
+                throw new AssertionError("combination " + combination + " must have " + (rangeCnt + 1) + " values");
+            Iterator<?> it = combination.iterator();
+            Object mainValue = it.next();
+            int mainNum = mainRange.getStepNum(mainValue);
+            if (mainNum < 0 || mainNum >= mainValueCnt || assigned[mainNum] != null ||
+                    !mainRange.getValue(mainNum).equals(mainValue))
+                return BigInteger.valueOf(-1);
+            int[] stepNums = new int[rangeCnt];
+            for (int j = 0; j < rangeCnt; j++) {
+                Object value = it.next();
+                Range range = ranges.get(j);
+                if (range.isEmpty()) {
+                    if (value != null)
+                        return BigInteger.valueOf(-1);
+                } else if (!range.isEnabled()) {
+                    if (!range.getCurrentValue().equals(value))
+                        return BigInteger.valueOf(-1);
+                } else {
+                    // номер шага должен быть в диапазоне и давать то же значение
+                    int stepNum = range.getStepNum(value);
+                    if (stepNum < 0 || stepNum > range.getStepCnt() || !range.getValue(stepNum).equals(value))
+                        return BigInteger.valueOf(-1);
+                    stepNums[j] = stepNum;
+                }
+            }
+            assigned[mainNum] = stepNums;
+        }
+        int[][] usedTrees = newUsedTrees();
+        for (int i = 0; i < mainValueCnt; i++) {
+            if (assigned[i] == null)
+                return BigInteger.valueOf(-1);
+            for (int j = 0; j < rangeCnt; j++) {
+                int stepNum = assigned[i][j];
+                int digit = stepNum;
+                int[] tree = usedTrees[j];
+                if (tree != null) {
+                    if (stepNum < 0 || stepNum >= tree.length - 1)
+                        return BigInteger.valueOf(-1);
+                    // номер значения среди не занятых предыдущими значениями главного диапазона
+                    int usedCnt = usedBefore(tree, stepNum);
+                    if (usedBefore(tree, stepNum + 1) != usedCnt)
+                        return BigInteger.valueOf(-1);
+                    digit -= usedCnt;
+                    markUsed(tree, stepNum);
+                }
+                if (digit < 0 || digit >= assignmentRadices[i * rangeCnt + j])
+                    return BigInteger.valueOf(-1);
+                digits[i * rangeCnt + j] = digit;
+            }
+        }
+        if (combinationCnt.bitLength() < 64) {
+            long res = 0;
+            for (int pos = digits.length - 1; pos >= 0; pos--)
+                res = res * assignmentRadices[pos] + digits[pos];
+            return BigInteger.valueOf(res);
+        }
+        BigInteger res = BigInteger.ZERO;
+        for (int pos = digits.length - 1; pos >= 0; pos--)
+            res = res.multiply(BigInteger.valueOf(assignmentRadices[pos])).add(BigInteger.valueOf(digits[pos]));
+        return res;
+    }
+
+    /**
+     * Преобразование номера набора комбинаций в набор комбинаций
+     *
+     * @param value номер набора
+     * @return набор комбинаций
+     */
+    @Override
+    public List<List<?>> gammaDeconv(BigInteger value) {
+        if (!isCombinatorial())
+            return super.gammaDeconv(value);
+        if (value.signum() < 0 || value.compareTo(combinationCnt) >= 0)
+            throw new AssertionError("gammaDeconv(): " + value + " is out of [0, " + combinationCnt + ")");
+        int rangeCnt = ranges.size();
+        int[] digits = new int[assignmentRadices.length];
+        if (combinationCnt.bitLength() < 64) {
+            long rest = value.longValue();
+            for (int pos = 0; pos < digits.length; pos++) {
+                digits[pos] = (int) (rest % assignmentRadices[pos]);
+                rest /= assignmentRadices[pos];
+            }
+        } else {
+            BigInteger rest = value;
+            for (int pos = 0; pos < digits.length; pos++) {
+                BigInteger[] qr = rest.divideAndRemainder(BigInteger.valueOf(assignmentRadices[pos]));
+                digits[pos] = qr[1].intValue();
+                rest = qr[0];
+            }
+        }
+        List<List<?>> res = new ArrayList<>(mainValueCnt);
+        int[][] usedTrees = newUsedTrees();
+        for (int i = 0; i < mainValueCnt; i++) {
+            List<Object> combination = new ArrayList<>(rangeCnt + 1);
+            combination.add(mainRange.getValue(i));
+            for (int j = 0; j < rangeCnt; j++) {
+                Range range = ranges.get(j);
+                int stepNum = digits[i * rangeCnt + j];
+                if (usedTrees[j] != null) {
+                    // ищем значение с заданным номером среди не занятых предыдущими значениями главного диапазона
+                    stepNum = selectFree(usedTrees[j], stepNum);
+                    markUsed(usedTrees[j], stepNum);
+                }
+                if (range.isEmpty())
+                    combination.add(null);
+                else
+                    combination.add(range.isEnabled() ? range.getValue(stepNum) : range.getCurrentValue());
+            }
+            res.add(combination);
+        }
+        return res;
+    }
+
+    /**
+     * Создать деревья Фенвика занятых значений диапазонов с неповторяемыми значениями
+     *
+     * @return деревья по номерам диапазонов (null для диапазонов, значения которых могут повторяться, и пустых)
+     */
+    private int[][] newUsedTrees() {
+        int[][] trees = new int[ranges.size()][];
+        for (int j = 0; j < trees.length; j++) {
+            Range range = ranges.get(j);
+            if (!range.isCanRepeatValue() && !range.isEmpty())
+                trees[j] = new int[(range.isEnabled() ? range.getStepCnt() + 1 : 1) + 1];
+        }
+        return trees;
+    }
+
+    /**
+     * Посчитать кол-во занятых значений с номерами меньше заданного
+     *
+     * @param tree    дерево Фенвика занятых значений (индексы с единицы)
+     * @param stepNum номер значения
+     * @return кол-во занятых значений с номерами от 0 до stepNum - 1
+     */
+    private static int usedBefore(int[] tree, int stepNum) {
+        int cnt = 0;
+        for (int i = stepNum; i > 0; i -= i & -i)
+            cnt += tree[i];
+        return cnt;
+    }
+
+    /**
+     * Отметить значение как занятое
+     *
+     * @param tree    дерево Фенвика занятых значений (индексы с единицы)
+     * @param stepNum номер значения
+     */
+    private static void markUsed(int[] tree, int stepNum) {
+        for (int i = stepNum + 1; i < tree.length; i += i & -i)
+            tree[i]++;
+    }
+
+    /**
+     * Найти значение по его номеру среди не занятых спуском по дереву Фенвика
+     *
+     * @param tree    дерево Фенвика занятых значений (индексы с единицы)
+     * @param freeNum номер значения среди не занятых
+     * @return номер значения
+     */
+    private static int selectFree(int[] tree, int freeNum) {
+        int pos = 0;
+        for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+            // в узле pos + step хранится кол-во занятых среди step значений
+            if (pos + step < tree.length && step - tree[pos + step] <= freeNum) {
+                pos += step;
+                freeNum -= step - tree[pos];
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Получить поток наборов комбинаций (в арифметическом режиме - по порядку номеров)
+     *
+     * @param parallel флаг, нужен ли параллельный поток
+     * @return поток наборов комбинаций
+     */
+    @Override
+    public Stream<List<List<?>>> combinationSetStream(boolean parallel) {
+        if (!isCombinatorial())
+            return super.combinationSetStream(parallel);
+        Stream<List<List<?>>> stream = Stream.iterate(BigInteger.ZERO, i -> i.compareTo(combinationCnt) < 0, i -> i.add(BigInteger.ONE))
+                .map(this::gammaDeconv);
+        return parallel ? stream.parallel() : stream;
+    }
+
+    /**
+     * Получить значение набора комбинаций, по которому он ищется в таблице
+     * (значения главного диапазона отбрасываются)
+     *
+     * @param combinationSets комбинации
+     * @return значение набора комбинаций
+     */
+    @Override
+    protected BigInteger combinationSetValue(List<List<?>> combinationSets) {
         List<List<?>> reducedCombinationSet = new LinkedList<>();
         for (List<?> combination : combinationSets) {
             reducedCombinationSet.add(new LinkedList<>(combination.subList(1, combination.size())));
         }
-        // получаем номер набора в списке номеров наборов
-        return super.gammaConv(reducedCombinationSet);
+        return super.combinationSetValue(reducedCombinationSet);
     }
 
     /**
-     * Преобразование номера набора комбинаций в набор комбинаций
+     * Получить набор комбинаций по его числу (в каждую комбинацию добавляется значение главного диапазона)
      *
-     * @param value номер комбинации
-     * @return следующая комбинация
+     * @param value число набора: единичные биты - номера входящих в него комбинаций
+     * @return набор комбинаций
      */
     @Override
-    public List<List<?>> gammaDeconv(BigInteger value) {
-        List<List<?>> gammaDeconved = super.gammaDeconv(value);
+    protected List<List<?>> combinationSetFromValue(BigInteger value) {
+        List<List<?>> gammaDeconved = super.combinationSetFromValue(value);
         List<List<?>> addedCombinationSet = new LinkedList<>();
         for (int i = 0; i < mainRange.getStepCnt(); i++) {
             LinkedList<Object> newCombination = new LinkedList<>(gammaDeconved.get(i));
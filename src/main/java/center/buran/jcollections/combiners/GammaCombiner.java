@@ -5,11 +5,24 @@ import center.buran.jcollections.combiners.ranges.Range;
 
 import java.math.BigInteger;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Класс переборщика комбинаций перебирает наборы комбинаций из всех диапазонов
  * Иными словами, комбинации комбинаций. В каждой комбинации первого уровня не может быть одинаковых значений
  * в указанных диапазонах, а в остальных - может
+ * <p>
+ * По умолчанию все подходящие наборы строятся при создании комбайнера поиском в глубину
+ * ({@link #combinationSetStream(boolean)}) и хранятся в таблице.
+ * В комбинаторном режиме таблица не строится: наборы упорядочены по значениям первого диапазона
+ * с неповторяемыми значениями (от последнего к первому), и с каждым значением в наборе либо нет
+ * ни одной комбинации, либо есть ровно одна. Кол-во наборов, которые можно составить из n оставшихся значений
+ * первого диапазона, когда в остальных диапазонах с неповторяемыми значениями уже занято по u значений,
+ * считается динамическим программированием, и номер набора переводится в набор и обратно по этим
+ * кол-вам, как в системе счисления со смешанным основанием. Перебираются те же наборы, что и в таблице
+ * (без последней комбинации диапазонов), но в другом порядке
  */
 public class GammaCombiner extends AlphaCombiner {
     /**
@@ -21,13 +34,53 @@ public class GammaCombiner extends AlphaCombiner {
      * Каждое число через последовательность битов определяет подбираемый набор комбинаций.
      * Каждой комбинации соответствует бит равный одному в этом числе. Номера единичных битов
      * определяют порядковые номера комбинаций, содержащихся в наборе.
+     * Список отсортирован по возрастанию, номер набора ищется в нём двоичным поиском
      */
-    private List<BigInteger> combinationSetValuesTable;
+    private CombinationSetTable combinationSetValuesTable;
     /**
-     * Массив предрассчитанных значений диапазонов с неповторяемыми значениями по номеру комбинации
-     * (первый индекс - номер комбинации, второй - номер диапазона с неповторяемыми значениями)
+     * Способ хранения таблицы
      */
-    private Integer[][] nonRepeatedRangeValuesFromNumbers;
+    private final TableStorage tableStorage;
+    /**
+     * Массив предрассчитанных номеров значений диапазонов с неповторяемыми значениями по номеру комбинации:
+     * номер значения k-го диапазона с неповторяемыми значениями в i-й комбинации хранится под индексом
+     * i * nonRepeatedRangeIndexes.size() + k
+     */
+    private int[] nonRepeatedRangeValuesFromNumbers;
+    /**
+     * Кол-во комбинаций, из которых составляются наборы
+     */
+    private int baseCombinationCnt;
+    /**
+     * Смещения битовых множеств найденных значений диапазонов с неповторяемыми значениями в массиве слов
+     * (последний элемент - размер массива)
+     */
+    private int[] foundValueWordOffsets;
+    /**
+     * Массив слов битовых множеств найденных значений для проверки наборов, свой у каждого потока
+     */
+    private final ThreadLocal<long[]> foundValueWords = new ThreadLocal<>();
+    /**
+     * Флаг комбинаторного режима: номера наборов рассчитываются без таблицы
+     */
+    private final boolean combinatorial;
+    /**
+     * Индексы непустых диапазонов с неповторяемыми значениями (комбинаторный режим)
+     */
+    private int[] constraintRangeIndexes;
+    /**
+     * Индексы включённых непустых диапазонов с повторяемыми значениями (комбинаторный режим)
+     */
+    private int[] freeRangeIndexes;
+    /**
+     * Кол-во сочетаний значений диапазонов с повторяемыми значениями (комбинаторный режим)
+     */
+    private BigInteger freeCnt;
+    /**
+     * Кол-во наборов по кол-ву оставшихся значений первого диапазона с неповторяемыми значениями
+     * (первый индекс) и кол-ву занятых значений в остальных (второй индекс) (комбинаторный режим)
+     */
+    private BigInteger[][] combinationSetCnts;
 
     /**
      * Конструктор хранителя интервалов
@@ -37,6 +90,8 @@ public class GammaCombiner extends AlphaCombiner {
      */
     public GammaCombiner(int rangeCnt) {
         super(rangeCnt);
+        this.combinatorial = false;
+        this.tableStorage = TableStorage.HEAP;
         initGamaCombinationLoop();
     }
 
@@ -46,7 +101,32 @@ public class GammaCombiner extends AlphaCombiner {
      * @param ranges список интервалов
      */
     public GammaCombiner(Range... ranges) {
+        this(false, ranges);
+    }
+
+    /**
+     * Конструктор хранителя интервалов
+     *
+     * @param combinatorial флаг комбинаторного режима: номера наборов рассчитываются без таблицы
+     * @param ranges        список интервалов
+     */
+    public GammaCombiner(boolean combinatorial, Range... ranges) {
         super(ranges);
+        this.combinatorial = combinatorial;
+        this.tableStorage = TableStorage.HEAP;
+        initGamaCombinationLoop();
+    }
+
+    /**
+     * Конструктор хранителя интервалов
+     *
+     * @param tableStorage способ хранения таблицы (она строится в конструкторе)
+     * @param ranges       список интервалов
+     */
+    public GammaCombiner(TableStorage tableStorage, Range... ranges) {
+        super(ranges);
+        this.combinatorial = false;
+        this.tableStorage = Objects.requireNonNull(tableStorage);
         initGamaCombinationLoop();
     }
 
@@ -56,7 +136,32 @@ public class GammaCombiner extends AlphaCombiner {
      * @param lst список интервалов
      */
     public GammaCombiner(List<Range> lst) {
+        this(false, lst);
+    }
+
+    /**
+     * Конструктор хранителя интервалов
+     *
+     * @param combinatorial флаг комбинаторного режима: номера наборов рассчитываются без таблицы
+     * @param lst           список интервалов
+     */
+    public GammaCombiner(boolean combinatorial, List<Range> lst) {
         super(Objects.requireNonNull(lst));
+        this.combinatorial = combinatorial;
+        this.tableStorage = TableStorage.HEAP;
+        initGamaCombinationLoop();
+    }
+
+    /**
+     * Конструктор хранителя интервалов
+     *
+     * @param tableStorage способ хранения таблицы (она строится в конструкторе)
+     * @param lst          список интервалов
+     */
+    public GammaCombiner(TableStorage tableStorage, List<Range> lst) {
+        super(Objects.requireNonNull(lst));
+        this.combinatorial = false;
+        this.tableStorage = Objects.requireNonNull(tableStorage);
         initGamaCombinationLoop();
     }
 
@@ -72,48 +177,411 @@ public class GammaCombiner extends AlphaCombiner {
      * инициализировать гамма переборщик
      */
     public void initGamaCombinationLoop() {
-        combinationLoopPos = BigInteger.ZERO;
+        long startNanos = System.nanoTime();
+        resetCombinationLoopPos();
+        initConv();
         // заполняем индексы диапазонов, в которых не должны повторяться значения
         nonRepeatedRangeIndexes = new ArrayList<>();
         for (int i = 0; i < ranges.size(); i++) {
             if (!ranges.get(i).isCanRepeatValue())
                 nonRepeatedRangeIndexes.add(i);
         }
+        if (combinatorial) {
+            nonRepeatedRangeValuesFromNumbers = null;
+            initCombinatorialCnt();
+            return;
+        }
+        initNonRepeatedRangeValues();
+        // строим только подходящие наборы, сразу по возрастанию их чисел
+        if (tableStorage == TableStorage.OFF_HEAP) {
+            // наборы сразу пишутся вне кучи, поэтому строим их последовательно
+            OffHeapCombinationSetTable table = new OffHeapCombinationSetTable(getBaseCombinationCnt());
+            StreamSupport.stream(combinationSetSpliterator(), false).forEach(table::add);
+            combinationSetValuesTable = table;
+        } else {
+            combinationSetValuesTable = CombinationSetTable.of(StreamSupport.stream(combinationSetSpliterator(), true)
+                    .collect(Collectors.toCollection(ArrayList::new)));
+        }
+        combinationCnt = BigInteger.valueOf(combinationSetValuesTable.size());
+        reportTableBuilt(startNanos, combinationSetValuesTable.size());
+    }
+
+    /**
+     * Рассчитать номера значений диапазонов с неповторяемыми значениями по номеру комбинации
+     */
+    private void initNonRepeatedRangeValues() {
         // получаем кол-во всех комбинаций
         AlphaCombiner allCombinationCombiner = new AlphaCombiner(ranges);
         BigInteger maxValue = allCombinationCombiner.combinationCnt;
-        // рассчитываем гаммы
-        ArrayList<Integer> gammas = new ArrayList<>();
-        int currentGamma = 1;
-        gammas.add(currentGamma);
-        for (int i = ranges.size() - 1; i >= 1; i--) {
-            currentGamma *= ranges.get(i).getStepCnt() + 1;
-            gammas.add(currentGamma);
+        // рассчитываем веса разрядов диапазонов в номере комбинации: нулевой диапазон - младший разряд,
+        // выключенные и пустые диапазоны разрядов не занимают
+        long[] placeValues = new long[ranges.size()];
+        int[] radices = new int[ranges.size()];
+        long placeValue = 1;
+        for (int i = 0; i < ranges.size(); i++) {
+            Range range = ranges.get(i);
+            placeValues[i] = placeValue;
+            radices[i] = !range.isEmpty() && range.isEnabled() ? range.getStepCnt() + 1 : 1;
+            placeValue *= radices[i];
         }
         //инициализируем массив предрассчитанных значений диапазонов с неповторяемыми значениями
-        nonRepeatedRangeValuesFromNumbers = new Integer[maxValue.bitLength()][nonRepeatedRangeIndexes.size()];
+        int nonRepeatedCnt = nonRepeatedRangeIndexes.size();
+        int[] newNonRepeatedRangeValues = new int[maxValue.bitLength() * nonRepeatedCnt];
         Async.parallelForEach(maxValue.bitLength(), (i) -> {
-            for (int j = 0; j < nonRepeatedRangeIndexes.size(); j++) {
+            for (int j = 0; j < nonRepeatedCnt; j++) {
                 int rangeNum = nonRepeatedRangeIndexes.get(j);
-                Range nonRepeatedRange = ranges.get(rangeNum);
-                nonRepeatedRangeValuesFromNumbers[i][j] = i / gammas.get(rangeNum) % (nonRepeatedRange.getStepCnt() + 1);
+                newNonRepeatedRangeValues[i * nonRepeatedCnt + j] = (int) (i / placeValues[rangeNum] % radices[rangeNum]);
             }
         });
+        int[] valueCnts = nonRepeatedValueCnts();
+        int[] newFoundValueWordOffsets = new int[nonRepeatedCnt + 1];
+        for (int j = 0; j < nonRepeatedCnt; j++)
+            newFoundValueWordOffsets[j + 1] = newFoundValueWordOffsets[j] + (valueCnts[j] + 63) / 64;
+        foundValueWordOffsets = newFoundValueWordOffsets;
+        baseCombinationCnt = maxValue.bitLength();
+        nonRepeatedRangeValuesFromNumbers = newNonRepeatedRangeValues;
+    }
+
+    /**
+     * Получить поток подходящих наборов комбинаций в порядке таблицы (по возрастанию их чисел).
+     * Наборы строятся поиском в глубину без перебора неподходящих, параллельный поток
+     * делится по старшим комбинациям наборов
+     *
+     * @param parallel флаг, нужен ли параллельный поток
+     * @return поток наборов комбинаций
+     */
+    public Stream<List<List<?>>> combinationSetStream(boolean parallel) {
+        return StreamSupport.stream(combinationSetSpliterator(), parallel).map(this::combinationSetFromValue);
+    }
+
+    /**
+     * Создать сплитератор чисел подходящих наборов комбинаций по возрастанию
+     *
+     * @return сплитератор чисел наборов комбинаций
+     */
+    protected Spliterator<BigInteger> combinationSetSpliterator() {
+        return new CombinationSetSpliterator(
+                getNonRepeatedRangeValuesFromNumbers(), getBaseCombinationCnt(), nonRepeatedValueCnts(), 0, Integer.MAX_VALUE
+        );
+    }
 
-        // создаём список чисел, соответствующих наборам комбинаций
-        List<BigInteger> newCombinationSetValuesList = Collections.synchronizedList(new LinkedList<>());
-        // проверяем каждую комбинацию
-        Async.parallelForEach(maxValue.add(BigInteger.ONE), (i) -> {
-            if (checkCombination(i))
-                synchronized (newCombinationSetValuesList) {
-                    newCombinationSetValuesList.add(i);
-                }
+    /**
+     * Получить кол-во значений каждого диапазона с неповторяемыми значениями
+     *
+     * @return кол-во значений каждого диапазона с неповторяемыми значениями
+     */
+    protected int[] nonRepeatedValueCnts() {
+        int[] valueCnts = new int[nonRepeatedRangeIndexes.size()];
+        for (int j = 0; j < valueCnts.length; j++)
+            valueCnts[j] = ranges.get(nonRepeatedRangeIndexes.get(j)).getStepCnt() + 1;
+        return valueCnts;
+    }
+
+    /**
+     * Получить массив номеров значений диапазонов с неповторяемыми значениями по номеру комбинации
+     *
+     * @return массив номеров значений: номер значения k-го диапазона с неповторяемыми значениями
+     * в i-й комбинации хранится под индексом i * nonRepeatedRangeIndexes.size() + k
+     */
+    protected int[] getNonRepeatedRangeValuesFromNumbers() {
+        // в комбинаторном режиме значения рассчитываются только для потока наборов
+        if (nonRepeatedRangeValuesFromNumbers == null)
+            initNonRepeatedRangeValues();
+        return nonRepeatedRangeValuesFromNumbers;
+    }
+
+    /**
+     * Получить кол-во комбинаций, из которых составляются наборы
+     *
+     * @return кол-во комбинаций
+     */
+    protected int getBaseCombinationCnt() {
+        getNonRepeatedRangeValuesFromNumbers();
+        return baseCombinationCnt;
+    }
+
+
+    /**
+     * Рассчитать кол-ва наборов для комбинаторного режима
+     */
+    private void initCombinatorialCnt() {
+        List<Integer> constraints = new ArrayList<>();
+        List<Integer> free = new ArrayList<>();
+        BigInteger allCnt = BigInteger.ONE;
+        for (int i = 0; i < ranges.size(); i++) {
+            Range range = ranges.get(i);
+            if (range.isEmpty())
+                continue;
+            allCnt = allCnt.multiply(BigInteger.valueOf(valueCnt(range)));
+            if (!range.isCanRepeatValue())
+                constraints.add(i);
+            else if (range.isEnabled())
+                free.add(i);
+        }
+        constraintRangeIndexes = constraints.stream().mapToInt(Integer::intValue).toArray();
+        freeRangeIndexes = free.stream().mapToInt(Integer::intValue).toArray();
+        freeCnt = BigInteger.ONE;
+        for (int i : freeRangeIndexes)
+            freeCnt = freeCnt.multiply(BigInteger.valueOf(valueCnt(ranges.get(i))));
+        int setSize = getFixedCombinationSetSize();
+        // без диапазонов с неповторяемыми значениями подходит любое подмножество комбинаций, кроме последней
+        if (constraintRangeIndexes.length == 0) {
+            combinationSetCnts = null;
+            baseCombinationCnt = allCnt.subtract(BigInteger.ONE).intValueExact();
+            combinationCnt = setSize < 0 ? BigInteger.ONE.shiftLeft(baseCombinationCnt) : binomial(baseCombinationCnt, setSize);
+            return;
+        }
+        int mainValueCnt = valueCnt(ranges.get(constraintRangeIndexes[0]));
+        int maxUsedCnt = mainValueCnt;
+        for (int k = 1; k < constraintRangeIndexes.length; k++)
+            maxUsedCnt = Math.min(maxUsedCnt, valueCnt(ranges.get(constraintRangeIndexes[k])));
+        combinationSetCnts = new BigInteger[mainValueCnt + 1][maxUsedCnt + 1];
+        // когда значения кончились, набор готов, если он нужного размера
+        for (int u = 0; u <= maxUsedCnt; u++)
+            combinationSetCnts[0][u] = setSize < 0 || u == setSize ? BigInteger.ONE : BigInteger.ZERO;
+        for (int n = 1; n <= mainValueCnt; n++) {
+            for (int u = 0; u <= maxUsedCnt; u++) {
+                // n-е значение либо не берём, либо берём ровно с одной комбинацией остальных значений
+                BigInteger cnt = combinationSetCnts[n - 1][u];
+                if (u < maxUsedCnt)
+                    cnt = cnt.add(choiceCnt(u).multiply(combinationSetCnts[n - 1][u + 1]));
+                combinationSetCnts[n][u] = cnt;
+            }
+        }
+        // последняя комбинация диапазонов не перебирается: наборы с ней - это она с последним значением
+        // первого диапазона и любой набор из оставшихся значений
+        combinationCnt = combinationSetCnts[mainValueCnt][0].subtract(combinationSetCnts[mainValueCnt - 1][1]);
+    }
+
+    /**
+     * Получить кол-во комбинаций в каждом наборе, если оно фиксировано
+     *
+     * @return кол-во комбинаций в каждом наборе, -1, если оно не фиксировано
+     */
+    protected int getFixedCombinationSetSize() {
+        return -1;
+    }
+
+    /**
+     * Получить кол-во значений диапазона, перебираемых в комбинаторном режиме
+     *
+     * @param range диапазон
+     * @return кол-во значений диапазона (у выключенного диапазона одно значение)
+     */
+    private static int valueCnt(Range range) {
+        return range.isEnabled() ? range.getStepCnt() + 1 : 1;
+    }
+
+    /**
+     * Получить кол-во комбинаций, которые можно взять со значением первого диапазона с неповторяемыми
+     * значениями, когда в остальных уже занято по u значений
+     *
+     * @param u кол-во занятых значений
+     * @return кол-во комбинаций
+     */
+    private BigInteger choiceCnt(int u) {
+        BigInteger cnt = freeCnt;
+        for (int k = 1; k < constraintRangeIndexes.length; k++)
+            cnt = cnt.multiply(BigInteger.valueOf(valueCnt(ranges.get(constraintRangeIndexes[k])) - u));
+        return cnt;
+    }
+
+    /**
+     * Узнать номер набора комбинаций по его значению в комбинаторном режиме
+     *
+     * @param combinationSets комбинации
+     * @return номер набора, -1, если такого набора нет
+     */
+    private BigInteger combinatorialConv(List<List<?>> combinationSets) {
+        List<int[]> digitsList = new ArrayList<>();
+        for (List<?> combination : combinationSets) {
+            int[] digits = toDigits(combination);
+            if (digits == null)
+                return BigInteger.valueOf(-1);
+            digitsList.add(digits);
+        }
+        if (constraintRangeIndexes.length == 0) {
+            BigInteger value = BigInteger.ZERO;
+            for (int[] digits : digitsList)
+                value = value.setBit(digitsToNumber(digits).intValueExact());
+            if (value.bitLength() > baseCombinationCnt)
+                return BigInteger.valueOf(-1);
+            if (getFixedCombinationSetSize() < 0)
+                return value;
+            return value.bitCount() == getFixedCombinationSetSize() ? combinadicRank(CombinationSet.fromBigInteger(value)) : BigInteger.valueOf(-1);
+        }
+        // набор другого размера в переборщике с фиксированной длиной не перебирается
+        if (getFixedCombinationSetSize() >= 0 && digitsList.size() != getFixedCombinationSetSize())
+            return BigInteger.valueOf(-1);
+        int mainRangeIdx = constraintRangeIndexes[0];
+        int[][] byMainValue = new int[valueCnt(ranges.get(mainRangeIdx))][];
+        for (int[] digits : digitsList) {
+            if (byMainValue[digits[mainRangeIdx]] != null)
+                return BigInteger.valueOf(-1);
+            byMainValue[digits[mainRangeIdx]] = digits;
+        }
+        boolean[][] used = newUsedValues();
+        BigInteger res = BigInteger.ZERO;
+        int u = 0;
+        for (int v = byMainValue.length - 1; v >= 0; v--) {
+            int[] digits = byMainValue[v];
+            if (digits == null)
+                continue;
+            // сначала идут наборы, в которых значение v не взято
+            res = res.add(combinationSetCnts[v][u]);
+            BigInteger choice = BigInteger.ZERO;
+            for (int k = 1; k < constraintRangeIndexes.length; k++) {
+                int digit = digits[constraintRangeIndexes[k]];
+                if (used[k][digit])
+                    return BigInteger.valueOf(-1);
+                // номер значения среди ещё не занятых
+                int freeNum = 0;
+                for (int j = 0; j < digit; j++)
+                    if (!used[k][j])
+                        freeNum++;
+                used[k][digit] = true;
+                choice = choice.multiply(BigInteger.valueOf(used[k].length - u)).add(BigInteger.valueOf(freeNum));
+            }
+            BigInteger freeNum = BigInteger.ZERO;
+            for (int j = freeRangeIndexes.length - 1; j >= 0; j--) {
+                int rangeIdx = freeRangeIndexes[j];
+                freeNum = freeNum.multiply(BigInteger.valueOf(valueCnt(ranges.get(rangeIdx))))
+                        .add(BigInteger.valueOf(digits[rangeIdx]));
+            }
+            choice = choice.multiply(freeCnt).add(freeNum);
+            // последняя комбинация диапазонов не перебирается
+            if (u == 0 && v == byMainValue.length - 1 && choice.equals(choiceCnt(0).subtract(BigInteger.ONE)))
+                return BigInteger.valueOf(-1);
+            res = res.add(choice.multiply(combinationSetCnts[v][u + 1]));
+            u++;
+        }
+        return res;
+    }
+
+    /**
+     * Преобразование номера набора комбинаций в набор комбинаций в комбинаторном режиме
+     *
+     * @param value номер набора
+     * @return набор комбинаций
+     */
+    private List<List<?>> combinatorialDeconv(BigInteger value) {
+        if (value.signum() < 0 || value.compareTo(combinationCnt) >= 0)
+            throw new AssertionError("gammaDeconv(): " + value + " is out of [0, " + combinationCnt + ")");
+        if (constraintRangeIndexes.length == 0)
+            return alphaDeconv(getFixedCombinationSetSize() < 0 ? CombinationSet.fromBigInteger(value)
+                    : combinadicUnrank(value, baseCombinationCnt, getFixedCombinationSetSize()));
+        boolean[][] used = newUsedValues();
+        List<int[]> digitsList = new ArrayList<>();
+        BigInteger rest = value;
+        int u = 0;
+        for (int v = valueCnt(ranges.get(constraintRangeIndexes[0])) - 1; v >= 0; v--) {
+            // сначала идут наборы, в которых значение v не взято
+            if (rest.compareTo(combinationSetCnts[v][u]) < 0)
+                continue;
+            BigInteger[] qr = rest.subtract(combinationSetCnts[v][u]).divideAndRemainder(combinationSetCnts[v][u + 1]);
+            BigInteger choice = qr[0];
+            rest = qr[1];
+            int[] digits = new int[ranges.size()];
+            digits[constraintRangeIndexes[0]] = v;
+            for (int rangeIdx : freeRangeIndexes) {
+                BigInteger[] digit = choice.divideAndRemainder(BigInteger.valueOf(valueCnt(ranges.get(rangeIdx))));
+                digits[rangeIdx] = digit[1].intValue();
+                choice = digit[0];
+            }
+            for (int k = constraintRangeIndexes.length - 1; k >= 1; k--) {
+                BigInteger[] digit = choice.divideAndRemainder(BigInteger.valueOf(used[k].length - u));
+                choice = digit[0];
+                // ищем значение с заданным номером среди ещё не занятых
+                int freeNum = digit[1].intValue();
+                int j = 0;
+                while (used[k][j] || freeNum-- > 0)
+                    j++;
+                used[k][j] = true;
+                digits[constraintRangeIndexes[k]] = j;
+            }
+            digitsList.add(digits);
+            u++;
+        }
+        // комбинации в наборе идут по возрастанию их номеров, как в таблице
+        digitsList.sort((a, b) -> {
+            for (int i = a.length - 1; i >= 0; i--)
+                if (a[i] != b[i])
+                    return Integer.compare(a[i], b[i]);
+            return 0;
         });
+        List<List<?>> res = new ArrayList<>(digitsList.size());
+        for (int[] digits : digitsList) {
+            List<Object> combination = new ArrayList<>(ranges.size());
+            for (int i = 0; i < ranges.size(); i++) {
+                Range range = ranges.get(i);
+                if (range.isEmpty())
+                    combination.add(null);
+                else
+                    combination.add(range.isEnabled() ? range.getValue(digits[i]) : range.getCurrentValue());
+            }
+            res.add(combination);
+        }
+        return res;
+    }
 
-        combinationSetValuesTable = new ArrayList<>(newCombinationSetValuesList);
-        combinationCnt = BigInteger.valueOf(combinationSetValuesTable.size());
+    /**
+     * Создать флаги занятых значений диапазонов с неповторяемыми значениями, кроме первого
+     *
+     * @return флаги занятых значений (первый индекс - номер диапазона среди диапазонов с неповторяемыми значениями)
+     */
+    private boolean[][] newUsedValues() {
+        boolean[][] used = new boolean[constraintRangeIndexes.length][];
+        for (int k = 1; k < constraintRangeIndexes.length; k++)
+            used[k] = new boolean[valueCnt(ranges.get(constraintRangeIndexes[k]))];
+        return used;
     }
 
+    /**
+     * Получить номера значений комбинации по диапазонам (у выключенных и пустых диапазонов - 0)
+     *
+     * @param combination комбинация
+     * @return номера значений комбинации, null, если значение не принадлежит своему диапазону
+     */
+    private int[] toDigits(List<?> combination) {
+        if (combination.size() != ranges.size())
+            throw new AssertionError("combination " + combination + " must have " + ranges.size() + " values");
+        int[] digits = new int[ranges.size()];
+        Iterator<?> it = combination.iterator();
+        for (int i = 0; i < ranges.size(); i++) {
+            Object value = it.next();
+            Range range = ranges.get(i);
+            if (range.isEmpty()) {
+                if (value != null)
+                    return null;
+            } else if (!range.isEnabled()) {
+                if (!range.getCurrentValue().equals(value))
+                    return null;
+            } else {
+                // номер шага должен быть в диапазоне и давать то же значение
+                int stepNum = range.getStepNum(value);
+                if (stepNum < 0 || stepNum >= valueCnt(range) || !range.getValue(stepNum).equals(value))
+                    return null;
+                digits[i] = stepNum;
+            }
+        }
+        return digits;
+    }
+
+    /**
+     * Получить номер комбинации по номерам её значений
+     *
+     * @param digits номера значений комбинации по диапазонам
+     * @return номер комбинации
+     */
+    private BigInteger digitsToNumber(int[] digits) {
+        BigInteger res = BigInteger.ZERO;
+        for (int i = ranges.size() - 1; i >= 0; i--) {
+            Range range = ranges.get(i);
+            if (!range.isEmpty())
+                res = res.multiply(BigInteger.valueOf(valueCnt(range))).add(BigInteger.valueOf(digits[i]));
+        }
+        return res;
+    }
 
     /**
      * Проверка комбинации, подходит ли она для данного комбайнера
@@ -122,38 +590,121 @@ public class GammaCombiner extends AlphaCombiner {
      * @return флаг, подходит ли комбинация для данного комбайнера
      */
     protected boolean checkCombination(BigInteger combinationNumber) {
-        // создаём список множеств, хранящих найденные значения
-        ArrayList<HashSet<Integer>> nonFoundValues = new ArrayList<>();
-        for (int k = 0; k < nonRepeatedRangeIndexes.size(); k++) {
-            HashSet<Integer> values = new HashSet<>();
-            nonFoundValues.add(values);
-        }
-        // перебираем биты в номере комбинации
-        for (int j = 0; j < combinationNumber.bitLength(); j++) {
-            // если текущий бит равен единице
-            if (combinationNumber.testBit(j)) {
-                // перебираем индексы диапазон с запрещёнными повторами
-                for (int k = 0; k < nonRepeatedRangeIndexes.size(); k++) {
-                    // если в множестве уже есть такое значение, значит,
-                    // такая комбинация нам не подходит
-                    if (!nonFoundValues.get(k).add(nonRepeatedRangeValuesFromNumbers[j][k])) {
-                        return false;
-                    }
-                }
+        int[] values = getNonRepeatedRangeValuesFromNumbers();
+        int nonRepeatedCnt = nonRepeatedRangeIndexes.size();
+        if (nonRepeatedCnt == 0)
+            return true;
+        // найденные значения храним в битовых множествах, массив слов переиспользуется потоком
+        long[] found = foundValueWords.get();
+        if (found == null || found.length < foundValueWordOffsets[nonRepeatedCnt]) {
+            found = new long[foundValueWordOffsets[nonRepeatedCnt]];
+            foundValueWords.set(found);
+        }
+        Arrays.fill(found, 0);
+        // перебираем только единичные биты номера набора
+        if (combinationNumber.bitLength() < 64) {
+            long bits = combinationNumber.longValue();
+            while (bits != 0) {
+                if (!addFoundValues(found, values, Long.numberOfTrailingZeros(bits)))
+                    return false;
+                bits &= bits - 1;
+            }
+            return true;
+        }
+        byte[] bytes = combinationNumber.toByteArray();
+        for (int i = 0; i < bytes.length; i++) {
+            int bits = bytes[bytes.length - 1 - i] & 0xFF;
+            while (bits != 0) {
+                if (!addFoundValues(found, values, i * 8 + Integer.numberOfTrailingZeros(bits)))
+                    return false;
+                bits &= bits - 1;
             }
         }
         return true;
     }
 
+    /**
+     * Добавить значения комбинации в найденные
+     *
+     * @param found          битовые множества найденных значений
+     * @param values         массив номеров значений диапазонов с неповторяемыми значениями по номеру комбинации
+     * @param combinationNum номер комбинации
+     * @return флаг, что ни одно из значений ещё не было найдено
+     */
+    private boolean addFoundValues(long[] found, int[] values, int combinationNum) {
+        int nonRepeatedCnt = nonRepeatedRangeIndexes.size();
+        for (int k = 0; k < nonRepeatedCnt; k++) {
+            int value = values[combinationNum * nonRepeatedCnt + k];
+            int word = foundValueWordOffsets[k] + (value >>> 6);
+            long bit = 1L << value;
+            // если значение уже найдено, значит, такая комбинация нам не подходит
+            if ((found[word] & bit) != 0)
+                return false;
+            found[word] |= bit;
+        }
+        return true;
+    }
+
     /**
      * Узнать номер набора комбинаций по его значению
      *
      * @param combinationSets комбинации
-     * @return номер комбинации
+     * @return номер комбинации, -1, если такого набора нет
      */
     public BigInteger gammaConv(List<List<?>> combinationSets) {
+        if (combinatorial)
+            return combinatorialConv(Objects.requireNonNull(combinationSets));
         // получаем номер набора в списке номеров наборов
-        return BigInteger.valueOf(combinationSetValuesTable.indexOf(alphaConv(Objects.requireNonNull(combinationSets))));
+        return BigInteger.valueOf(combinationSetValuesTable.indexOf(combinationSetValue(combinationSets)));
+    }
+
+    /**
+     * Узнать номера нескольких наборов комбинаций за один проход по таблице:
+     * значения наборов сортируются, и каждое следующее ищется только правее предыдущего
+     *
+     * @param combinationSetsList список наборов комбинаций
+     * @return номера наборов в том же порядке, -1 для наборов, которых нет
+     */
+    public List<BigInteger> gammaConvBatch(List<List<List<?>>> combinationSetsList) {
+        int n = Objects.requireNonNull(combinationSetsList).size();
+        if (combinatorial) {
+            List<BigInteger> res = new ArrayList<>(n);
+            for (List<List<?>> combinationSets : combinationSetsList)
+                res.add(gammaConv(combinationSets));
+            return res;
+        }
+        BigInteger[] values = new BigInteger[n];
+        Integer[] order = new Integer[n];
+        int i = 0;
+        for (List<List<?>> combinationSets : combinationSetsList) {
+            values[i] = combinationSetValue(combinationSets);
+            order[i] = i;
+            i++;
+        }
+        Arrays.sort(order, Comparator.comparing(k -> values[k]));
+        BigInteger[] res = new BigInteger[n];
+        long from = 0;
+        for (int k : order) {
+            long idx = combinationSetValuesTable.indexOf(values[k], from, combinationSetValuesTable.size());
+            if (idx >= 0) {
+                from = idx;
+                res[k] = BigInteger.valueOf(idx);
+            } else {
+                from = -idx - 1;
+                res[k] = BigInteger.valueOf(-1);
+            }
+        }
+        return Arrays.asList(res);
+    }
+
+    /**
+     * Получить значение набора комбинаций, по которому он ищется в таблице
+     *
+     * @param combinationSets комбинации
+     * @return значение набора комбинаций
+     */
+    protected BigInteger combinationSetValue(List<List<?>> combinationSets) {
+        return alphaConv(Objects.requireNonNull(combinationSets));
     }
 
     /**
@@ -163,7 +714,19 @@ public class GammaCombiner extends AlphaCombiner {
      * @return следующая комбинация
      */
     public List<List<?>> gammaDeconv(BigInteger value) {
-        return alphaDeconv(combinationSetValuesTable.get(value.intValue()));
+        if (combinatorial)
+            return combinatorialDeconv(Objects.requireNonNull(value));
+        return combinationSetFromValue(combinationSetValuesTable.get(value.longValueExact()));
+    }
+
+    /**
+     * Получить набор комбинаций по его числу
+     *
+     * @param value число набора: единичные биты - номера входящих в него комбинаций
+     * @return набор комбинаций
+     */
+    protected List<List<?>> combinationSetFromValue(BigInteger value) {
+        return alphaDeconv(value);
     }
 
     /**
@@ -175,6 +738,24 @@ public class GammaCombiner extends AlphaCombiner {
         return nonRepeatedRangeIndexes;
     }
 
+    /**
+     * Получить способ хранения таблицы
+     *
+     * @return способ хранения таблицы
+     */
+    public TableStorage getTableStorage() {
+        return tableStorage;
+    }
+
+    /**
+     * Получить флаг комбинаторного режима
+     *
+     * @return флаг комбинаторного режима: номера наборов рассчитываются без таблицы
+     */
+    public boolean isCombinatorial() {
+        return combinatorial;
+    }
+
     /**
      * Строковое представление объекта вида:
      *
@@ -204,19 +785,21 @@ public class GammaCombiner extends AlphaCombiner {
 
         GammaCombiner that = (GammaCombiner) o;
 
-        if (!Objects.equals(nonRepeatedRangeIndexes, that.nonRepeatedRangeIndexes))
+        if (combinatorial != that.combinatorial)
             return false;
-        if (!Objects.equals(combinationSetValuesTable, that.combinationSetValuesTable))
+        if (!Objects.equals(nonRepeatedRangeIndexes, that.nonRepeatedRangeIndexes))
             return false;
-        return Arrays.deepEquals(nonRepeatedRangeValuesFromNumbers, that.nonRepeatedRangeValuesFromNumbers);
+        // номера значений по номерам комбинаций определяются диапазонами и в комбинаторном режиме
+        // рассчитываются лениво, поэтому не сравниваются
+        return Objects.equals(combinationSetValuesTable, that.combinationSetValuesTable);
     }
 
     @Override
     public int hashCode() {
         int result = super.hashCode();
+        result = 31 * result + (combinatorial ? 1 : 0);
         result = 31 * result + (nonRepeatedRangeIndexes != null ? nonRepeatedRangeIndexes.hashCode() : 0);
         result = 31 * result + (combinationSetValuesTable != null ? combinationSetValuesTable.hashCode() : 0);
-        result = 31 * result + Arrays.deepHashCode(nonRepeatedRangeValuesFromNumbers);
         return result;
     }
 }
@@ -0,0 +1,153 @@
+package center.buran.jcollections.combiners;
+
+import java.math.BigInteger;
+
+/**
+ * Курсор перебора комбинаций в порядке отражённого кода Грея со смешанными основаниями
+ * (основание разряда - кол-во шагов диапазона + 1): соседние комбинации отличаются значением
+ * ровно одного диапазона, и оно меняется ровно на один шаг. После каждого перехода можно узнать,
+ * какой диапазон изменился и в какую сторону.
+ * <p>
+ * Переход выполняется без циклов по разрядам с помощью указателей фокуса
+ * (алгоритм H из 4 тома "Искусства программирования" Д. Кнута), поэтому каждый шаг стоит O(1).
+ * Перебор начинается с комбинации с номером 0 и обходит все комбинации ровно по одному разу
+ */
+public class GrayCombinationCursor extends CombinationCursor {
+    /**
+     * Номера диапазонов, участвующих в коде Грея (разрешённые диапазоны больше чем с одним значением)
+     */
+    private final int[] grayRangeIndexes;
+    /**
+     * Основания разрядов кода Грея
+     */
+    private final int[] grayRadices;
+    /**
+     * Направления изменения разрядов (+1 или -1)
+     */
+    private final int[] directions;
+    /**
+     * Указатели фокуса
+     */
+    private final int[] focus;
+    /**
+     * Флаг, выдана ли уже первая комбинация
+     */
+    private boolean started;
+    /**
+     * Флаг, закончился ли перебор
+     */
+    private boolean finished;
+    /**
+     * Номер диапазона, изменившегося при последнем переходе, -1 для первой комбинации
+     */
+    private int changedRangeIdx = -1;
+    /**
+     * Направление изменения диапазона при последнем переходе (+1 или -1), 0 для первой комбинации
+     */
+    private int changeDirection;
+
+    /**
+     * Конструктор курсора
+     *
+     * @param combiner комбайнер
+     */
+    public GrayCombinationCursor(Combiner combiner) {
+        super(combiner, BigInteger.ZERO, combiner.getCombinationCnt());
+        int grayDigitCnt = 0;
+        for (int radix : radices) {
+            if (radix > 1)
+                grayDigitCnt++;
+        }
+        grayRangeIndexes = new int[grayDigitCnt];
+        grayRadices = new int[grayDigitCnt];
+        int grayDigit = 0;
+        for (int i = 0; i < radices.length; i++) {
+            if (radices[i] > 1) {
+                grayRangeIndexes[grayDigit] = digitRangeIndexes[i];
+                grayRadices[grayDigit] = radices[i];
+                grayDigit++;
+            }
+        }
+        directions = new int[grayDigitCnt];
+        focus = new int[grayDigitCnt + 1];
+        for (int i = 0; i < grayDigitCnt; i++)
+            directions[i] = 1;
+        for (int i = 0; i <= grayDigitCnt; i++)
+            focus[i] = i;
+    }
+
+    /**
+     * Перейти к следующей комбинации в порядке кода Грея
+     * (первый вызов переходит к комбинации с номером 0)
+     *
+     * @return флаг, удалось ли перейти, false, если комбинации закончились
+     */
+    @Override
+    public boolean next() {
+        return reportDecoded(advance());
+    }
+
+    /**
+     * Перейти к следующей комбинации в порядке кода Грея без учёта в метриках
+     *
+     * @return флаг, удалось ли перейти, false, если комбинации закончились
+     */
+    private boolean advance() {
+        if (finished)
+            return false;
+        if (!started) {
+            started = true;
+            return true;
+        }
+        int j = focus[0];
+        focus[0] = 0;
+        if (j == grayRadices.length) {
+            finished = true;
+            changedRangeIdx = -1;
+            changeDirection = 0;
+            return false;
+        }
+        int rangeIdx = grayRangeIndexes[j];
+        stepNums[rangeIdx] += directions[j];
+        changedRangeIdx = rangeIdx;
+        changeDirection = directions[j];
+        // разряд дошёл до края: меняем его направление и передаём фокус дальше
+        if (stepNums[rangeIdx] == 0 || stepNums[rangeIdx] == grayRadices[j] - 1) {
+            directions[j] = -directions[j];
+            focus[j] = focus[j + 1];
+            focus[j + 1] = j + 1;
+        }
+        return true;
+    }
+
+    /**
+     * Получить номер диапазона, изменившегося при последнем переходе
+     *
+     * @return номер диапазона, -1, если это первая комбинация
+     */
+    public int getChangedRangeIdx() {
+        return changedRangeIdx;
+    }
+
+    /**
+     * Получить направление изменения диапазона при последнем переходе
+     *
+     * @return +1, если номер шага диапазона увеличился, -1, если уменьшился, 0 для первой комбинации
+     */
+    public int getChangeDirection() {
+        return changeDirection;
+    }
+
+    /**
+     * Получить номер текущей комбинации (в нумерации {@link Combiner#deconv(BigInteger)})
+     *
+     * @return номер текущей комбинации
+     */
+    @Override
+    public BigInteger getPosition() {
+        BigInteger value = BigInteger.ZERO;
+        for (int i = radices.length - 1; i >= 0; i--)
+            value = value.multiply(BigInteger.valueOf(radices[i])).add(BigInteger.valueOf(stepNums[digitRangeIndexes[i]]));
+        return value;
+    }
+}
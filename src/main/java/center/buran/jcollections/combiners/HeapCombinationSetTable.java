@@ -0,0 +1,34 @@
+package center.buran.jcollections.combiners;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Таблица наборов комбинаций в виде списка чисел в куче
+ */
+class HeapCombinationSetTable extends CombinationSetTable {
+    /**
+     * Отсортированный по возрастанию список чисел наборов
+     */
+    private final List<BigInteger> values;
+
+    /**
+     * Конструктор таблицы
+     *
+     * @param values отсортированный по возрастанию список чисел наборов
+     */
+    HeapCombinationSetTable(List<BigInteger> values) {
+        this.values = Objects.requireNonNull(values);
+    }
+
+    @Override
+    public long size() {
+        return values.size();
+    }
+
+    @Override
+    public BigInteger get(long index) {
+        return values.get(Math.toIntExact(index));
+    }
+}
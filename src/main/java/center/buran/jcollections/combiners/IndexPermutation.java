@@ -0,0 +1,180 @@
+package center.buran.jcollections.combiners;
+
+import java.math.BigInteger;
+import java.util.Objects;
+
+/**
+ * Псевдослучайная перестановка номеров [0, size), задаваемая зерном.
+ * Номер рассматривается как 2h-битное число и перемешивается сетью Фейстеля из половинок по h бит
+ * (сеть Фейстеля обратима при любой функции раунда, поэтому это перестановка 2h-битных чисел).
+ * Если результат вышел за size, сеть применяется повторно, пока он не попадёт в [0, size)
+ * (cycle walking): так получается перестановка самого отрезка. Поскольку 2^(2h) < 4 * size,
+ * в среднем хватает меньше четырёх применений.
+ * <p>
+ * Перестановке не нужна память под посещённые номера, значение для любого номера считается
+ * независимо от остальных, поэтому перебор в таком порядке можно делить между потоками
+ */
+public class IndexPermutation {
+    /**
+     * Кол-во раундов сети Фейстеля
+     */
+    private static final int ROUND_CNT = 6;
+    /**
+     * Кол-во переставляемых номеров
+     */
+    private final BigInteger size;
+    /**
+     * Кол-во переставляемых номеров, если оно помещается в long, иначе -1
+     */
+    private final long longSize;
+    /**
+     * Кол-во бит в половине номера
+     */
+    private final int halfBits;
+    /**
+     * Маска половины номера (если номера перемешиваются в long)
+     */
+    private final long halfMask;
+    /**
+     * Ключи раундов
+     */
+    private final long[] roundKeys;
+
+    /**
+     * Конструктор перестановки
+     *
+     * @param size кол-во переставляемых номеров
+     * @param seed зерно
+     */
+    public IndexPermutation(BigInteger size, long seed) {
+        this.size = Objects.requireNonNull(size);
+        if (size.signum() < 0)
+            throw new AssertionError("size " + size + " is negative");
+        this.longSize = size.bitLength() < 64 ? size.longValue() : -1;
+        int bitCnt = Math.max(size.subtract(BigInteger.ONE).bitLength(), 2);
+        this.halfBits = (bitCnt + 1) / 2;
+        this.halfMask = halfBits < 64 ? (1L << halfBits) - 1 : -1L;
+        this.roundKeys = new long[ROUND_CNT];
+        long state = seed;
+        for (int i = 0; i < ROUND_CNT; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            roundKeys[i] = mix(state);
+        }
+    }
+
+    /**
+     * Перемешать биты числа (финализатор SplitMix64)
+     *
+     * @param z число
+     * @return перемешанное число
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Получить номер, стоящий на заданном месте перестановки
+     *
+     * @param index место в перестановке, от 0 до size - 1
+     * @return номер
+     */
+    public long permute(long index) {
+        if (longSize < 0 || 2 * halfBits > 62)
+            return permute(BigInteger.valueOf(index)).longValue();
+        if (index < 0 || index >= longSize)
+            throw new AssertionError("index " + index + " is out of [0, " + longSize + ")");
+        if (longSize <= 1)
+            return index;
+        long value = index;
+        do {
+            value = feistel(value);
+        } while (value >= longSize);
+        return value;
+    }
+
+    /**
+     * Получить номер, стоящий на заданном месте перестановки
+     *
+     * @param index место в перестановке, от 0 до size - 1
+     * @return номер
+     */
+    public BigInteger permute(BigInteger index) {
+        if (index.signum() < 0 || index.compareTo(size) >= 0)
+            throw new AssertionError("index " + index + " is out of [0, " + size + ")");
+        if (longSize >= 0 && 2 * halfBits <= 62)
+            return BigInteger.valueOf(permute(index.longValue()));
+        BigInteger value = index;
+        do {
+            value = feistel(value);
+        } while (value.compareTo(size) >= 0);
+        return value;
+    }
+
+    /**
+     * Применить сеть Фейстеля к 2h-битному числу в long
+     *
+     * @param value число
+     * @return перемешанное число
+     */
+    private long feistel(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (long roundKey : roundKeys) {
+            long newRight = left ^ (mix(right * 0x9E3779B97F4A7C15L + roundKey) & halfMask);
+            left = right;
+            right = newRight;
+        }
+        return (left << halfBits) | right;
+    }
+
+    /**
+     * Применить сеть Фейстеля к 2h-битному числу в BigInteger
+     *
+     * @param value число
+     * @return перемешанное число
+     */
+    private BigInteger feistel(BigInteger value) {
+        BigInteger mask = BigInteger.ONE.shiftLeft(halfBits).subtract(BigInteger.ONE);
+        BigInteger left = value.shiftRight(halfBits);
+        BigInteger right = value.and(mask);
+        for (long roundKey : roundKeys) {
+            BigInteger newRight = left.xor(roundFunction(right, roundKey));
+            left = right;
+            right = newRight;
+        }
+        return left.shiftLeft(halfBits).or(right);
+    }
+
+    /**
+     * Функция раунда для половин, не помещающихся в long: хэш половины по словам,
+     * развёрнутый в h бит в режиме счётчика
+     *
+     * @param half     половина числа
+     * @param roundKey ключ раунда
+     * @return h-битное псевдослучайное число
+     */
+    private BigInteger roundFunction(BigInteger half, long roundKey) {
+        long hash = roundKey;
+        for (int i = 0; i < half.bitLength(); i += 64)
+            hash = mix(hash ^ half.shiftRight(i).longValue());
+        int wordCnt = (halfBits + 63) / 64;
+        byte[] bytes = new byte[wordCnt * 8 + 1];
+        for (int i = 0; i < wordCnt; i++) {
+            long word = mix(hash + (i + 1) * 0x9E3779B97F4A7C15L);
+            for (int j = 0; j < 8; j++)
+                bytes[bytes.length - 1 - i * 8 - j] = (byte) (word >>> (8 * j));
+        }
+        return new BigInteger(bytes).and(BigInteger.ONE.shiftLeft(halfBits).subtract(BigInteger.ONE));
+    }
+
+    /**
+     * Получить кол-во переставляемых номеров
+     *
+     * @return кол-во переставляемых номеров
+     */
+    public BigInteger getSize() {
+        return size;
+    }
+}
@@ -0,0 +1,163 @@
+package center.buran.jcollections.combiners;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Таблица наборов комбинаций вне кучи. Каждое число набора хранится записью из wordCnt слов long
+ * (младшее слово первое) в прямых буферах. Буферы делятся на куски по CHUNK_WORD_CNT слов, т.к. размер
+ * одного буфера ограничен 2 ГБ; последний кусок растёт удвоением, чтобы маленькие таблицы не занимали
+ * целый кусок. Числа при поиске сравниваются по словам, без создания BigInteger
+ */
+class OffHeapCombinationSetTable extends CombinationSetTable {
+    /**
+     * Наибольшее кол-во слов в одном куске (128 МБ)
+     */
+    private static final int CHUNK_WORD_CNT = 1 << 24;
+    /**
+     * Начальное кол-во записей в куске
+     */
+    private static final int INITIAL_CHUNK_SIZE = 1024;
+    /**
+     * Кол-во слов в записи
+     */
+    private final int wordCnt;
+    /**
+     * Кол-во записей в полном куске
+     */
+    private final int chunkSize;
+    /**
+     * Куски таблицы
+     */
+    private final List<LongBuffer> chunks = new ArrayList<>();
+    /**
+     * Кол-во наборов в таблице
+     */
+    private long size;
+
+    /**
+     * Конструктор пустой таблицы
+     *
+     * @param maxBitLength наибольшая длина числа набора в битах
+     */
+    OffHeapCombinationSetTable(int maxBitLength) {
+        this.wordCnt = Math.max(1, (maxBitLength + 63) / 64);
+        this.chunkSize = Math.max(1, CHUNK_WORD_CNT / wordCnt);
+    }
+
+    /**
+     * Выделить буфер вне кучи
+     *
+     * @param entryCnt кол-во записей
+     * @return буфер
+     */
+    private LongBuffer allocate(int entryCnt) {
+        return ByteBuffer.allocateDirect(entryCnt * wordCnt * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+
+    /**
+     * Добавить число набора в конец таблицы (числа должны добавляться по возрастанию)
+     *
+     * @param value число набора
+     */
+    void add(BigInteger value) {
+        if (value.signum() < 0 || value.bitLength() > wordCnt * 64)
+            throw new AssertionError("combination set value " + value + " does not fit " + wordCnt + " words");
+        int offset = (int) (size % chunkSize);
+        if (offset == 0) {
+            chunks.add(allocate(Math.min(INITIAL_CHUNK_SIZE, chunkSize)));
+        } else {
+            LongBuffer last = chunks.get(chunks.size() - 1);
+            if (offset * wordCnt == last.capacity()) {
+                // последний кусок заполнен, но ещё не дорос до полного: удваиваем его
+                LongBuffer grown = allocate(Math.min(2 * offset, chunkSize));
+                last.rewind();
+                grown.put(last);
+                chunks.set(chunks.size() - 1, grown);
+            }
+        }
+        LongBuffer chunk = chunks.get(chunks.size() - 1);
+        int pos = offset * wordCnt;
+        for (int w = 0; w < wordCnt; w++)
+            chunk.put(pos + w, wordOf(value, w));
+        size++;
+    }
+
+    /**
+     * Получить слово числа
+     *
+     * @param value число
+     * @param w     номер слова (0 - младшее)
+     * @return слово числа
+     */
+    private static long wordOf(BigInteger value, int w) {
+        return value.shiftRight(64 * w).longValue();
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public BigInteger get(long index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("index " + index + " is out of [0, " + size + ")");
+        LongBuffer chunk = chunks.get((int) (index / chunkSize));
+        int pos = (int) (index % chunkSize) * wordCnt;
+        byte[] magnitude = new byte[wordCnt * Long.BYTES];
+        for (int w = 0; w < wordCnt; w++) {
+            long word = chunk.get(pos + w);
+            for (int b = 0; b < Long.BYTES; b++)
+                magnitude[magnitude.length - 1 - w * Long.BYTES - b] = (byte) (word >>> (8 * b));
+        }
+        return new BigInteger(1, magnitude);
+    }
+
+    @Override
+    public long indexOf(BigInteger value, long from, long to) {
+        if (value.signum() < 0)
+            return -(from + 1);
+        if (value.bitLength() > wordCnt * 64)
+            return -(to + 1);
+        // переводим число в слова один раз и дальше сравниваем записи по словам
+        long[] key = new long[wordCnt];
+        for (int w = 0; w < wordCnt; w++)
+            key[w] = wordOf(value, w);
+        long lo = from;
+        long hi = to - 1;
+        while (lo <= hi) {
+            long mid = (lo + hi) >>> 1;
+            int cmp = compareAt(mid, key);
+            if (cmp < 0)
+                lo = mid + 1;
+            else if (cmp > 0)
+                hi = mid - 1;
+            else
+                return mid;
+        }
+        return -(lo + 1);
+    }
+
+    /**
+     * Сравнить запись таблицы с числом, заданным словами
+     *
+     * @param index номер набора
+     * @param key   слова числа (младшее первое)
+     * @return результат сравнения, как в {@link Comparable#compareTo(Object)}
+     */
+    private int compareAt(long index, long[] key) {
+        LongBuffer chunk = chunks.get((int) (index / chunkSize));
+        int pos = (int) (index % chunkSize) * wordCnt;
+        for (int w = wordCnt - 1; w >= 0; w--) {
+            int cmp = Long.compareUnsigned(chunk.get(pos + w), key[w]);
+            if (cmp != 0)
+                return cmp;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,506 @@
+package center.buran.jcollections.combiners;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал выполненных комбинаций, хранящийся в отображённом в память файле.
+ * Выполненные номера хранятся как множество непересекающихся отрезков [start, end), соседние
+ * отрезки сливаются, поэтому отрезки, выполненные параллельными обработчиками не по порядку,
+ * занимают мало места.
+ * <p>
+ * Каждый выполненный отрезок дописывается в конец лога записью фиксированной длины: порядковый номер
+ * снимка, к которому относится запись, начало и конец отрезка и контрольная сумма CRC32 этих полей.
+ * Когда лог заполняется, все отрезки записываются снимком (уплотнение) и лог начинается заново.
+ * Для снимков в файле две ячейки, снимок пишется в ту, что сейчас не действующая: порядковый номер,
+ * кол-во отрезков, контрольная сумма CRC32 и сами отрезки.
+ * При открытии берётся ячейка с правильной контрольной суммой и большим порядковым номером, и к ней
+ * применяются записи лога с её порядковым номером до первой испорченной, поэтому обрыв записи в любой
+ * момент не портит предыдущее состояние журнала.
+ * Запись в отображённую память переживает падение JVM, для защиты от падения ОС нужен {@link #force()}.
+ * В начале файла заголовок: сигнатура, версия формата, максимальное кол-во отрезков и кол-во записей лога.
+ * Размеры существующего журнала берутся из заголовка, параметры конструктора задают размеры нового файла
+ * <p>
+ * Чтобы продолжить перебор после перезапуска, нужно вызвать {@link #resume(Combiner)} и каждый
+ * занятый отрезок комбинаций разбивать {@link #remaining(CombinationChunk)} на ещё не выполненные части
+ */
+public class ProgressJournal implements Closeable {
+    /**
+     * Максимальное кол-во отрезков по умолчанию
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    /**
+     * Кол-во записей лога по умолчанию
+     */
+    public static final int DEFAULT_LOG_CAPACITY = 1 << 12;
+    /**
+     * Сигнатура файла журнала
+     */
+    private static final int MAGIC = 0x504A524E;
+    /**
+     * Версия формата файла
+     */
+    private static final int VERSION = 1;
+    /**
+     * Размер заголовка файла: сигнатура, версия, максимальное кол-во отрезков, кол-во записей лога
+     */
+    private static final int FILE_HEADER_SIZE = 4 * Integer.BYTES;
+    /**
+     * Размер заголовка ячейки: порядковый номер, кол-во отрезков, контрольная сумма
+     */
+    private static final int SLOT_HEADER_SIZE = Long.BYTES + Integer.BYTES + Long.BYTES;
+    /**
+     * Размер записи лога: порядковый номер снимка, начало и конец отрезка, контрольная сумма
+     */
+    private static final int RECORD_SIZE = 4 * Long.BYTES;
+    /**
+     * Максимальное кол-во отрезков
+     */
+    private final int capacity;
+    /**
+     * Размер ячейки, байт
+     */
+    private final int slotSize;
+    /**
+     * Кол-во записей лога
+     */
+    private final int logCapacity;
+    /**
+     * Канал файла журнала
+     */
+    private final FileChannel channel;
+    /**
+     * Отображённый в память файл журнала
+     */
+    private final MappedByteBuffer buffer;
+    /**
+     * Выполненные отрезки: начало отрезка - конец отрезка (не включая)
+     */
+    private final TreeMap<Long, Long> intervals = new TreeMap<>();
+    /**
+     * Порядковый номер последней записи
+     */
+    private long seq;
+    /**
+     * Кол-во записей в логе после последнего снимка
+     */
+    private int logCnt;
+    /**
+     * Кол-во выполненных комбинаций
+     */
+    private long doneCnt;
+
+    /**
+     * Открыть журнал (если файла нет, он будет создан; размеры существующего журнала берутся из файла)
+     *
+     * @param file        файл журнала
+     * @param capacity    максимальное кол-во отрезков нового журнала
+     * @param logCapacity кол-во записей лога между снимками нового журнала
+     * @throws IOException ошибка работы с файлом или файл не является журналом
+     */
+    public ProgressJournal(Path file, int capacity, int logCapacity) throws IOException {
+        checkGeometry(capacity, logCapacity);
+        this.channel = FileChannel.open(Objects.requireNonNull(file), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean created = channel.size() == 0;
+        try {
+            if (!created) {
+                ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+                while (header.hasRemaining() && channel.read(header, header.position()) >= 0) ;
+                if (header.hasRemaining() || header.getInt(0) != MAGIC)
+                    throw new IOException(file + " is not a progress journal");
+                if (header.getInt(Integer.BYTES) != VERSION)
+                    throw new IOException(file + ": unsupported progress journal version " +
+                            header.getInt(Integer.BYTES));
+                capacity = header.getInt(2 * Integer.BYTES);
+                logCapacity = header.getInt(3 * Integer.BYTES);
+                try {
+                    checkGeometry(capacity, logCapacity);
+                } catch (AssertionError e) {
+                    throw new IOException(file + ": " + e.getMessage());
+                }
+            }
+            this.capacity = capacity;
+            this.slotSize = SLOT_HEADER_SIZE + capacity * 2 * Long.BYTES;
+            this.logCapacity = logCapacity;
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    FILE_HEADER_SIZE + 2L * slotSize + (long) logCapacity * RECORD_SIZE);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        if (created) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(Integer.BYTES, VERSION);
+            buffer.putInt(2 * Integer.BYTES, capacity);
+            buffer.putInt(3 * Integer.BYTES, logCapacity);
+        }
+        load();
+    }
+
+    /**
+     * Открыть журнал с кол-вом записей лога по умолчанию
+     *
+     * @param file     файл журнала
+     * @param capacity максимальное кол-во отрезков
+     * @throws IOException ошибка работы с файлом
+     */
+    public ProgressJournal(Path file, int capacity) throws IOException {
+        this(file, capacity, DEFAULT_LOG_CAPACITY);
+    }
+
+    /**
+     * Открыть журнал с максимальным кол-вом отрезков по умолчанию
+     *
+     * @param file файл журнала
+     * @throws IOException ошибка работы с файлом
+     */
+    public ProgressJournal(Path file) throws IOException {
+        this(file, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Проверить размеры журнала
+     *
+     * @param capacity    максимальное кол-во отрезков
+     * @param logCapacity кол-во записей лога
+     */
+    private static void checkGeometry(int capacity, int logCapacity) {
+        if (capacity <= 0)
+            throw new AssertionError("capacity " + capacity + " must be positive");
+        if (logCapacity <= 0)
+            throw new AssertionError("log capacity " + logCapacity + " must be positive");
+        if ((long) capacity * 2 * Long.BYTES + SLOT_HEADER_SIZE > Integer.MAX_VALUE / 4 ||
+                (long) logCapacity * RECORD_SIZE > Integer.MAX_VALUE / 4)
+            throw new AssertionError("capacity " + capacity + " or log capacity " + logCapacity + " is too big");
+    }
+
+    /**
+     * Получить смещение ячейки снимка
+     *
+     * @param slot номер ячейки
+     * @return смещение ячейки
+     */
+    private int slotOffset(int slot) {
+        return FILE_HEADER_SIZE + slot * slotSize;
+    }
+
+    /**
+     * Загрузить последнее целое состояние журнала
+     */
+    private void load() {
+        int best = -1;
+        long bestSeq = -1;
+        for (int slot = 0; slot < 2; slot++) {
+            int offset = slotOffset(slot);
+            long slotSeq = buffer.getLong(offset);
+            int cnt = buffer.getInt(offset + Long.BYTES);
+            if (slotSeq <= 0 || cnt < 0 || cnt > capacity)
+                continue;
+            if (checksum(offset, slotSeq, cnt) == buffer.getLong(offset + Long.BYTES + Integer.BYTES) &&
+                    slotSeq > bestSeq) {
+                best = slot;
+                bestSeq = slotSeq;
+            }
+        }
+        if (best >= 0) {
+            seq = bestSeq;
+            int offset = slotOffset(best);
+            int cnt = buffer.getInt(offset + Long.BYTES);
+            for (int i = 0; i < cnt; i++) {
+                long start = buffer.getLong(offset + SLOT_HEADER_SIZE + i * 2 * Long.BYTES);
+                long end = buffer.getLong(offset + SLOT_HEADER_SIZE + i * 2 * Long.BYTES + Long.BYTES);
+                intervals.put(start, end);
+                doneCnt += end - start;
+            }
+        }
+        // применяем записи лога, сделанные после снимка (записи прежних снимков имеют другой номер)
+        while (logCnt < logCapacity) {
+            int pos = recordOffset(logCnt);
+            long start = buffer.getLong(pos + Long.BYTES);
+            long end = buffer.getLong(pos + 2 * Long.BYTES);
+            if (buffer.getLong(pos) != seq || start < 0 || end <= start ||
+                    recordChecksum(pos) != buffer.getLong(pos + 3 * Long.BYTES) ||
+                    mergedSize(start, end) > capacity)
+                break;
+            merge(start, end);
+            logCnt++;
+        }
+    }
+
+    /**
+     * Получить смещение записи лога
+     *
+     * @param recordNum номер записи
+     * @return смещение записи
+     */
+    private int recordOffset(int recordNum) {
+        return slotOffset(2) + recordNum * RECORD_SIZE;
+    }
+
+    /**
+     * Посчитать контрольную сумму записи лога
+     *
+     * @param pos смещение записи
+     * @return контрольная сумма
+     */
+    private long recordChecksum(int pos) {
+        CRC32 crc = new CRC32();
+        ByteBuffer data = buffer.duplicate();
+        data.limit(pos + 3 * Long.BYTES).position(pos);
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    /**
+     * Посчитать контрольную сумму ячейки
+     *
+     * @param offset  смещение ячейки
+     * @param slotSeq порядковый номер записи
+     * @param cnt     кол-во отрезков
+     * @return контрольная сумма
+     */
+    private long checksum(int offset, long slotSeq, int cnt) {
+        CRC32 crc = new CRC32();
+        byte[] header = new byte[Long.BYTES + Integer.BYTES];
+        for (int i = 0; i < Long.BYTES; i++)
+            header[i] = (byte) (slotSeq >>> (8 * i));
+        for (int i = 0; i < Integer.BYTES; i++)
+            header[Long.BYTES + i] = (byte) (cnt >>> (8 * i));
+        crc.update(header);
+        ByteBuffer data = buffer.duplicate();
+        data.limit(offset + SLOT_HEADER_SIZE + cnt * 2 * Long.BYTES).position(offset + SLOT_HEADER_SIZE);
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    /**
+     * Записать текущее состояние снимком в недействующую ячейку и начать лог заново
+     */
+    private void writeSnapshot() {
+        long newSeq = seq + 1;
+        int offset = slotOffset((int) (newSeq % 2));
+        int pos = offset + SLOT_HEADER_SIZE;
+        for (Map.Entry<Long, Long> interval : intervals.entrySet()) {
+            buffer.putLong(pos, interval.getKey());
+            buffer.putLong(pos + Long.BYTES, interval.getValue());
+            pos += 2 * Long.BYTES;
+        }
+        buffer.putLong(offset, newSeq);
+        buffer.putInt(offset + Long.BYTES, intervals.size());
+        buffer.putLong(offset + Long.BYTES + Integer.BYTES, checksum(offset, newSeq, intervals.size()));
+        seq = newSeq;
+        logCnt = 0;
+    }
+
+    /**
+     * Дописать отрезок в лог (если лог заполнен, записывается снимок)
+     *
+     * @param start номер первой комбинации
+     * @param end   номер комбинации, следующей за последней
+     */
+    private void append(long start, long end) {
+        if (logCnt == logCapacity) {
+            writeSnapshot();
+            return;
+        }
+        int pos = recordOffset(logCnt);
+        buffer.putLong(pos, seq);
+        buffer.putLong(pos + Long.BYTES, start);
+        buffer.putLong(pos + 2 * Long.BYTES, end);
+        buffer.putLong(pos + 3 * Long.BYTES, recordChecksum(pos));
+        logCnt++;
+    }
+
+    /**
+     * Посчитать кол-во отрезков после добавления отрезка, не меняя их
+     *
+     * @param start номер первой комбинации
+     * @param end   номер комбинации, следующей за последней
+     * @return кол-во отрезков
+     */
+    private int mergedSize(long start, long end) {
+        Map.Entry<Long, Long> floor = intervals.floorEntry(start);
+        boolean floorAbsorbed = floor != null && floor.getValue() >= start;
+        // отрезки, начинающиеся не позже конца добавляемого, тоже сливаются с ним
+        int absorbed = intervals.subMap(start, true, end, true).size();
+        if (floorAbsorbed && floor.getKey() < start)
+            absorbed++;
+        return intervals.size() - absorbed + 1;
+    }
+
+    /**
+     * Добавить отрезок к выполненным, поглотив пересекающиеся и соседние отрезки
+     *
+     * @param start номер первой комбинации
+     * @param end   номер комбинации, следующей за последней
+     */
+    private void merge(long start, long end) {
+        Map.Entry<Long, Long> floor = intervals.floorEntry(start);
+        if (floor != null && floor.getValue() >= start) {
+            start = floor.getKey();
+            end = Math.max(end, floor.getValue());
+        }
+        Map.Entry<Long, Long> next = intervals.ceilingEntry(start);
+        while (next != null && next.getKey() <= end) {
+            end = Math.max(end, next.getValue());
+            doneCnt -= next.getValue() - next.getKey();
+            intervals.remove(next.getKey());
+            next = intervals.ceilingEntry(start);
+        }
+        intervals.put(start, end);
+        doneCnt += end - start;
+    }
+
+    /**
+     * Отметить отрезок номеров комбинаций как выполненный и дописать его в лог
+     *
+     * @param start номер первой комбинации
+     * @param end   номер комбинации, следующей за последней
+     */
+    public synchronized void markDone(long start, long end) {
+        if (start < 0 || end < start)
+            throw new AssertionError("markDone(): wrong interval [" + start + ", " + end + ")");
+        if (start == end)
+            return;
+        // проверяем переполнение до изменения состояния, чтобы память не разошлась с файлом
+        int newSize = mergedSize(start, end);
+        if (newSize > capacity)
+            throw new AssertionError("progress journal overflow: " + newSize + " intervals, capacity " + capacity);
+        merge(start, end);
+        append(start, end);
+    }
+
+    /**
+     * Отметить отрезок комбинаций как выполненный и дописать его в лог
+     *
+     * @param chunk отрезок комбинаций
+     */
+    public void markDone(CombinationChunk chunk) {
+        long start = chunk.getStart().longValueExact();
+        markDone(start, start + chunk.getSize());
+    }
+
+    /**
+     * Проверить, выполнена ли комбинация
+     *
+     * @param combinationNumber номер комбинации
+     * @return флаг, выполнена ли комбинация
+     */
+    public synchronized boolean isDone(long combinationNumber) {
+        Map.Entry<Long, Long> floor = intervals.floorEntry(combinationNumber);
+        return floor != null && floor.getValue() > combinationNumber;
+    }
+
+    /**
+     * Получить номер первой невыполненной комбинации, не меньшей заданной
+     *
+     * @param from номер комбинации
+     * @return номер первой невыполненной комбинации
+     */
+    public synchronized long nextUndone(long from) {
+        Map.Entry<Long, Long> floor = intervals.floorEntry(from);
+        return floor != null && floor.getValue() > from ? floor.getValue() : from;
+    }
+
+    /**
+     * Разбить отрезок комбинаций на невыполненные части
+     *
+     * @param chunk отрезок комбинаций
+     * @return невыполненные части отрезка
+     */
+    public synchronized List<CombinationChunk> remaining(CombinationChunk chunk) {
+        long start = chunk.getStart().longValueExact();
+        long end = start + chunk.getSize();
+        List<CombinationChunk> res = new ArrayList<>();
+        long pos = nextUndone(start);
+        while (pos < end) {
+            Map.Entry<Long, Long> next = intervals.higherEntry(pos);
+            long gapEnd = next == null ? end : Math.min(next.getKey(), end);
+            res.add(new CombinationChunk(chunk.getCombiner(), BigInteger.valueOf(pos), (int) (gapEnd - pos)));
+            pos = next == null ? end : next.getValue();
+        }
+        return res;
+    }
+
+    /**
+     * Продолжить перебор комбайнера с первой невыполненной комбинации
+     * (если выполнены все комбинации, перебор переводится в конец)
+     *
+     * @param combiner комбайнер
+     * @return флаг, остались ли невыполненные комбинации
+     */
+    public boolean resume(Combiner combiner) {
+        if (combiner.getCombinationCnt().bitLength() >= 64)
+            throw new AssertionError("resume(): combination count " + combiner.getCombinationCnt() + " does not fit long");
+        long pos = nextUndone(0);
+        if (pos >= combiner.getCombinationCnt().longValue()) {
+            combiner.finishCombinationLoop();
+            return false;
+        }
+        combiner.setCombinationLoopPos(BigInteger.valueOf(pos));
+        return true;
+    }
+
+    /**
+     * Получить выполненные отрезки
+     *
+     * @return выполненные отрезки: начало отрезка - конец отрезка (не включая)
+     */
+    public synchronized SortedMap<Long, Long> getIntervals() {
+        return new TreeMap<>(intervals);
+    }
+
+    /**
+     * Получить максимальное кол-во отрезков
+     *
+     * @return максимальное кол-во отрезков
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Получить кол-во записей лога между снимками
+     *
+     * @return кол-во записей лога
+     */
+    public int getLogCapacity() {
+        return logCapacity;
+    }
+
+    /**
+     * Получить кол-во выполненных комбинаций
+     *
+     * @return кол-во выполненных комбинаций
+     */
+    public synchronized long getDoneCnt() {
+        return doneCnt;
+    }
+
+    /**
+     * Сбросить журнал на диск (защищает от потери данных при падении ОС)
+     */
+    public synchronized void force() {
+        buffer.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return "ProgressJournal{" + getIntervals() + "}";
+    }
+}
@@ -0,0 +1,16 @@
+package center.buran.jcollections.combiners;
+
+/**
+ * Способ деления номеров комбинаций между частями перебора
+ */
+public enum ShardMode {
+    /**
+     * Каждой части достаётся сплошной отрезок номеров
+     */
+    CONTIGUOUS,
+    /**
+     * Части перебирают номера через одну: часть i получает номера i, i + n, i + 2n, ...
+     * (работа распределяется равномерно, даже если её сложность зависит от номера)
+     */
+    INTERLEAVED
+}
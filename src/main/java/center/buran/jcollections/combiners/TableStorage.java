@@ -0,0 +1,16 @@
+package center.buran.jcollections.combiners;
+
+/**
+ * Способ хранения таблицы наборов комбинаций GammaCombiner
+ */
+public enum TableStorage {
+    /**
+     * Список чисел наборов в куче
+     */
+    HEAP,
+    /**
+     * Числа наборов записями фиксированной длины из слов long вне кучи (в прямых буферах):
+     * без накладных расходов на объекты, поэтому таблицы из сотен миллионов наборов не занимают кучу
+     */
+    OFF_HEAP
+}
@@ -0,0 +1,211 @@
+package center.buran.jcollections.combiners.metrics;
+
+import center.buran.jcollections.combiners.Combiner;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Метрики комбайнера: кол-во и скорость развёртки комбинаций, гистограммы времени свёртки
+ * и развёртки, позиция перебора и время построения таблицы наборов комбинаций.
+ * Собираются как слушатель комбайнера и публикуются через JMX.
+ * <p>
+ * Таблицы GammaCombiner строятся в конструкторе, время построения комбайнер запоминает
+ * и передаёт слушателю, когда он задаётся ({@link Combiner#setMetricsListener(CombinerMetricsListener)})
+ */
+public class CombinerMetrics implements CombinerMetricsListener, CombinerMetricsMXBean {
+    /**
+     * Комбайнер
+     */
+    private final Combiner combiner;
+    /**
+     * Кол-во развёрнутых комбинаций
+     */
+    private final LongAdder decodedCnt = new LongAdder();
+    /**
+     * Гистограмма времени развёртки
+     */
+    private final LatencyHistogram deconvLatency = new LatencyHistogram();
+    /**
+     * Гистограмма времени свёртки
+     */
+    private final LatencyHistogram convLatency = new LatencyHistogram();
+    /**
+     * Момент создания или сброса метрик, нс
+     */
+    private volatile long startNanos = System.nanoTime();
+    /**
+     * Время построения таблицы наборов комбинаций, нс
+     */
+    private volatile long tableBuildNanos;
+    /**
+     * Кол-во элементов таблицы наборов комбинаций
+     */
+    private volatile long tableSize;
+    /**
+     * Имя, под которым метрики зарегистрированы в JMX, null, если не зарегистрированы
+     */
+    private ObjectName objectName;
+
+    /**
+     * Конструктор метрик (слушателем комбайнера они не становятся)
+     *
+     * @param combiner комбайнер
+     */
+    public CombinerMetrics(Combiner combiner) {
+        this.combiner = Objects.requireNonNull(combiner);
+    }
+
+    /**
+     * Создать метрики и задать их слушателем комбайнера
+     *
+     * @param combiner комбайнер
+     * @return метрики комбайнера
+     */
+    public static CombinerMetrics attach(Combiner combiner) {
+        CombinerMetrics metrics = new CombinerMetrics(combiner);
+        combiner.setMetricsListener(metrics);
+        return metrics;
+    }
+
+    /**
+     * Зарегистрировать метрики в JMX под именем
+     * center.buran.jcollections:type=Combiner,name=&lt;name&gt;
+     *
+     * @param name имя комбайнера
+     * @return метрики
+     * @throws JMException ошибка регистрации
+     */
+    public synchronized CombinerMetrics register(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName newName = new ObjectName("center.buran.jcollections:type=Combiner,name=" +
+                ObjectName.quote(Objects.requireNonNull(name)));
+        server.registerMBean(this, newName);
+        objectName = newName;
+        return this;
+    }
+
+    /**
+     * Удалить метрики из JMX
+     *
+     * @throws JMException ошибка удаления
+     */
+    public synchronized void unregister() throws JMException {
+        if (objectName != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            objectName = null;
+        }
+    }
+
+    @Override
+    public void onDeconv(long nanos) {
+        decodedCnt.increment();
+        deconvLatency.record(nanos);
+    }
+
+    @Override
+    public void onConv(long nanos) {
+        convLatency.record(nanos);
+    }
+
+    @Override
+    public void onDecoded(long count) {
+        decodedCnt.add(count);
+    }
+
+    @Override
+    public void onTableBuilt(Combiner combiner, long nanos, long size) {
+        tableBuildNanos = nanos;
+        tableSize = size;
+    }
+
+    @Override
+    public long getDecodedCnt() {
+        return decodedCnt.sum();
+    }
+
+    @Override
+    public double getDecodedPerSecond() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds <= 0 ? 0 : decodedCnt.sum() / seconds;
+    }
+
+    @Override
+    public long[] getDeconvLatencyHistogram() {
+        return deconvLatency.getCounts();
+    }
+
+    @Override
+    public long[] getConvLatencyHistogram() {
+        return convLatency.getCounts();
+    }
+
+    @Override
+    public long getDeconvP99Nanos() {
+        return deconvLatency.getQuantileUpperBound(0.99);
+    }
+
+    @Override
+    public long getConvP99Nanos() {
+        return convLatency.getQuantileUpperBound(0.99);
+    }
+
+    @Override
+    public String getCombinationLoopPos() {
+        return combiner.getCombinationLoopPos().toString();
+    }
+
+    @Override
+    public String getCombinationCnt() {
+        return combiner.getCombinationCnt().toString();
+    }
+
+    @Override
+    public double getProgress() {
+        BigInteger cnt = combiner.getCombinationCnt();
+        if (cnt.signum() == 0)
+            return 1;
+        return combiner.getCombinationLoopPos().doubleValue() / cnt.doubleValue();
+    }
+
+    @Override
+    public long getTableBuildNanos() {
+        return tableBuildNanos;
+    }
+
+    @Override
+    public long getTableSize() {
+        return tableSize;
+    }
+
+    @Override
+    public void reset() {
+        decodedCnt.reset();
+        deconvLatency.reset();
+        convLatency.reset();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Получить гистограмму времени развёртки
+     *
+     * @return гистограмма времени развёртки
+     */
+    public LatencyHistogram getDeconvLatency() {
+        return deconvLatency;
+    }
+
+    /**
+     * Получить гистограмму времени свёртки
+     *
+     * @return гистограмма времени свёртки
+     */
+    public LatencyHistogram getConvLatency() {
+        return convLatency;
+    }
+}
@@ -0,0 +1,44 @@
+package center.buran.jcollections.combiners.metrics;
+
+import center.buran.jcollections.combiners.Combiner;
+
+/**
+ * Слушатель событий комбайнера для сбора метрик. Методы вызываются из рабочих потоков
+ * на каждую операцию, поэтому должны быть быстрыми и потокобезопасными.
+ * Если слушатель комбайнеру не задан, метрики не стоят ничего, кроме чтения одного поля
+ */
+public interface CombinerMetricsListener {
+    /**
+     * Комбинация развёрнута по номеру
+     *
+     * @param nanos время развёртки, нс
+     */
+    default void onDeconv(long nanos) {
+    }
+
+    /**
+     * Комбинация свёрнута в номер
+     *
+     * @param nanos время свёртки, нс
+     */
+    default void onConv(long nanos) {
+    }
+
+    /**
+     * Курсором перебрана пачка комбинаций (потоки, отрезки, пакеты)
+     *
+     * @param count кол-во комбинаций
+     */
+    default void onDecoded(long count) {
+    }
+
+    /**
+     * Построена таблица наборов комбинаций (GammaCombiner и его наследники)
+     *
+     * @param combiner комбайнер
+     * @param nanos    время построения, нс
+     * @param size     кол-во элементов таблицы
+     */
+    default void onTableBuilt(Combiner combiner, long nanos, long size) {
+    }
+}
@@ -0,0 +1,88 @@
+package center.buran.jcollections.combiners.metrics;
+
+/**
+ * Метрики комбайнера, доступные через JMX
+ */
+public interface CombinerMetricsMXBean {
+    /**
+     * Получить кол-во развёрнутых комбинаций
+     *
+     * @return кол-во развёрнутых комбинаций
+     */
+    long getDecodedCnt();
+
+    /**
+     * Получить среднее кол-во развёрнутых комбинаций в секунду с момента создания или сброса метрик
+     *
+     * @return кол-во развёрнутых комбинаций в секунду
+     */
+    double getDecodedPerSecond();
+
+    /**
+     * Получить гистограмму времени развёртки (корзины по степеням двойки, нс)
+     *
+     * @return кол-во развёрток в корзинах
+     */
+    long[] getDeconvLatencyHistogram();
+
+    /**
+     * Получить гистограмму времени свёртки (корзины по степеням двойки, нс)
+     *
+     * @return кол-во свёрток в корзинах
+     */
+    long[] getConvLatencyHistogram();
+
+    /**
+     * Получить оценку сверху 99-го процентиля времени развёртки
+     *
+     * @return оценка 99-го процентиля времени развёртки, нс
+     */
+    long getDeconvP99Nanos();
+
+    /**
+     * Получить оценку сверху 99-го процентиля времени свёртки
+     *
+     * @return оценка 99-го процентиля времени свёртки, нс
+     */
+    long getConvP99Nanos();
+
+    /**
+     * Получить текущую позицию перебора комбайнера
+     *
+     * @return текущая позиция перебора
+     */
+    String getCombinationLoopPos();
+
+    /**
+     * Получить кол-во комбинаций комбайнера
+     *
+     * @return кол-во комбинаций
+     */
+    String getCombinationCnt();
+
+    /**
+     * Получить долю перебранных комбинаций
+     *
+     * @return доля перебранных комбинаций, от 0 до 1
+     */
+    double getProgress();
+
+    /**
+     * Получить время построения таблицы наборов комбинаций
+     *
+     * @return время построения таблицы, нс, 0, если таблица не строилась
+     */
+    long getTableBuildNanos();
+
+    /**
+     * Получить кол-во элементов таблицы наборов комбинаций
+     *
+     * @return кол-во элементов таблицы
+     */
+    long getTableSize();
+
+    /**
+     * Сбросить счётчики и гистограммы
+     */
+    void reset();
+}
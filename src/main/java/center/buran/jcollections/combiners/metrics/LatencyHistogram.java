@@ -0,0 +1,109 @@
+package center.buran.jcollections.combiners.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма задержек с корзинами по степеням двойки: в корзину i попадают значения
+ * из [2^i, 2^(i+1)), в нулевую - ещё и ноль. Запись без блокировок, счётчики - LongAdder
+ */
+public class LatencyHistogram {
+    /**
+     * Кол-во корзин
+     */
+    public static final int BUCKET_CNT = 64;
+    /**
+     * Счётчики корзин
+     */
+    private final LongAdder[] buckets = new LongAdder[BUCKET_CNT];
+    /**
+     * Сумма значений
+     */
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Конструктор гистограммы
+     */
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKET_CNT; i++)
+            buckets[i] = new LongAdder();
+    }
+
+    /**
+     * Записать значение
+     *
+     * @param nanos значение, нс
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        buckets[value == 0 ? 0 : 63 - Long.numberOfLeadingZeros(value)].increment();
+        sum.add(value);
+    }
+
+    /**
+     * Получить кол-во значений в корзинах
+     *
+     * @return кол-во значений в корзинах
+     */
+    public long[] getCounts() {
+        long[] counts = new long[BUCKET_CNT];
+        for (int i = 0; i < BUCKET_CNT; i++)
+            counts[i] = buckets[i].sum();
+        return counts;
+    }
+
+    /**
+     * Получить кол-во значений
+     *
+     * @return кол-во значений
+     */
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets)
+            count += bucket.sum();
+        return count;
+    }
+
+    /**
+     * Получить среднее значение
+     *
+     * @return среднее значение, нс, 0, если значений нет
+     */
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    /**
+     * Получить оценку сверху квантиля: верхнюю границу корзины, в которую он попадает
+     *
+     * @param quantile квантиль, от 0 до 1
+     * @return оценка квантиля, нс, 0, если значений нет
+     */
+    public long getQuantileUpperBound(double quantile) {
+        if (quantile < 0 || quantile > 1)
+            throw new AssertionError("quantile " + quantile + " is out of [0, 1]");
+        long[] counts = getCounts();
+        long total = 0;
+        for (long count : counts)
+            total += count;
+        if (total == 0)
+            return 0;
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_CNT; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0)
+                return i == BUCKET_CNT - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Сбросить гистограмму
+     */
+    public void reset() {
+        for (LongAdder bucket : buckets)
+            bucket.reset();
+        sum.reset();
+    }
+}
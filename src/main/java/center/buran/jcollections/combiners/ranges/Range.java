@@ -212,6 +212,18 @@ public abstract class Range {
         return value * (stepCnt + 1) + getStepNum(Objects.requireNonNull(object));
     }
 
+    /**
+     * Добавить значение в свёртку
+     *
+     * @param value  свёртка в которую нужно добавить значение, его нужно умножить на stepCnt+1 и прибавить номер
+     *               текущего шага
+     * @param object значение, которое нужно добавить в свёртку
+     * @return новая свёртка
+     */
+    public long pushTo(long value, Object object) {
+        return value * (stepCnt + 1) + getStepNum(Objects.requireNonNull(object));
+    }
+
     /**
      * Добавить значение в свёртку
      *
@@ -79,6 +79,16 @@ public abstract class PrimitiveRange extends Range {
         return min;
     }
 
+    /**
+     * Получить шаг диапазона
+     *
+     * @return шаг диапазона
+     */
+    @JsonIgnore
+    public Object getStep() {
+        return step;
+    }
+
 
     /**
      * Обрезать значение по границам интервала
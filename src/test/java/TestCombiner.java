@@ -1,14 +1,21 @@
 
 import center.buran.jcollections.combiners.*;
+import center.buran.jcollections.combiners.metrics.CombinerMetrics;
 import center.buran.jcollections.combiners.ranges.Range;
 import center.buran.jcollections.combiners.ranges.primitive.CharRange;
 import center.buran.jcollections.combiners.ranges.primitive.IntRange;
 import org.junit.Test;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Collectors;
 
 
 public class TestCombiner {
@@ -31,6 +38,45 @@ public class TestCombiner {
         testAlphaCombiner(combiner);
     }
 
+    @Test
+    public void testCardinalityOrder() {
+        AlphaCombiner combiner = new AlphaCombiner(Range.of(0, 2), Range.of(0, 1));
+        // 5 комбинаций: 2^5 - 1 наборов без набора из всех комбинаций
+        assert combiner.getCombinationCnt().equals(BigInteger.valueOf(31));
+        List<CombinationSet> sets = combiner.cardinalitySetStream(BigInteger.ZERO).collect(Collectors.toList());
+        assert sets.size() == 31;
+        assert new HashSet<>(sets).size() == 31;
+        for (int i = 0; i < sets.size(); i++) {
+            assert combiner.cardinalityDeconvToSet(BigInteger.valueOf(i)).equals(sets.get(i));
+            assert combiner.cardinalityConv(sets.get(i)).equals(BigInteger.valueOf(i));
+            assert i == 0 || sets.get(i - 1).size() <= sets.get(i).size();
+            assert combiner.cardinalityConv(combiner.cardinalityDeconv(BigInteger.valueOf(i))).equals(BigInteger.valueOf(i));
+        }
+        assert combiner.getCardinalityStart(2).equals(BigInteger.valueOf(6));
+        assert sets.subList(13, 31).equals(combiner.cardinalitySetStream(BigInteger.valueOf(13)).collect(Collectors.toList()));
+        assert combiner.cardinalityConv(combiner.alphaDeconv(BigInteger.valueOf(31))).equals(BigInteger.valueOf(-1));
+    }
+
+    @Test
+    public void testCombinationSet() {
+        CombinationSet a = new CombinationSet().add(0).add(63).add(64).add(3000);
+        CombinationSet b = new CombinationSet().add(63).add(200).add(3000);
+        assert a.size() == 4;
+        assert CombinationSet.fromBigInteger(a.toBigInteger()).equals(a);
+        assert a.toBigInteger().equals(BigInteger.ZERO.setBit(0).setBit(63).setBit(64).setBit(3000));
+        assert a.union(b).toBigInteger().equals(a.toBigInteger().or(b.toBigInteger()));
+        assert a.intersection(b).toBigInteger().equals(a.toBigInteger().and(b.toBigInteger()));
+        assert a.difference(b).toBigInteger().equals(a.toBigInteger().andNot(b.toBigInteger()));
+        assert a.nextCombinationNum(65) == 3000 && a.nextCombinationNum(3001) == -1;
+        assert a.remove(3000).remove(64).toBigInteger().bitLength() == 64;
+        assert new CombinationSet().toBigInteger().equals(BigInteger.ZERO);
+
+        AlphaCombiner combiner = new AlphaCombiner(Range.of(0, 99), Range.of(0, 49));
+        List<List<?>> decoved = combiner.alphaDeconv(b);
+        assert decoved.size() == 3;
+        assert combiner.alphaConvToSet(decoved).equals(b);
+    }
+
 
     private void testAlphaCombiner(AlphaCombiner combiner) {
         BigInteger cnt = combiner.getCombinationCnt();
@@ -61,6 +107,74 @@ public class TestCombiner {
 
     }
 
+    @Test
+    public void testMetrics() throws JMException {
+        GammaCombiner gammaCombiner = new GammaCombiner(
+                new CharRange('A', 'C', null, null, true, true),
+                new IntRange(2, 4, null, null, true, false)
+        );
+        // таблица построена в конструкторе, слушатель получает её построение при подключении
+        CombinerMetrics tableMetrics = CombinerMetrics.attach(gammaCombiner);
+        assert tableMetrics.getTableSize() == gammaCombiner.getCombinationCnt().longValue();
+        assert tableMetrics.getTableBuildNanos() > 0;
+
+        Combiner combiner = new Combiner(Range.of(0, 99), Range.of(0, 9));
+        assert combiner.getMetricsListener() == null;
+        CombinerMetrics metrics = CombinerMetrics.attach(combiner).register("testMetrics");
+        try {
+            for (int i = 0; i < 100; i++)
+                combiner.conv(combiner.deconv((long) i));
+            assert combiner.stream().mapToInt(List::size).sum() == 1000 * 2;
+            combiner.getNextAsList();
+            assert metrics.getDecodedCnt() == 100 + 1000 + 1;
+            assert metrics.getDeconvLatency().getCount() == 101;
+            assert metrics.getConvLatency().getCount() == 100;
+            Object pos = ManagementFactory.getPlatformMBeanServer().getAttribute(
+                    new ObjectName("center.buran.jcollections:type=Combiner,name=\"testMetrics\""), "CombinationLoopPos");
+            assert pos.equals("1");
+
+            // перебор курсорами, частями, кодом Грея, записями и параллельной обработкой тоже учитывается
+            metrics.reset();
+            CombinationCursor cursor = combiner.cursor();
+            while (cursor.next()) ;
+            Iterator<List<Object>> shard = combiner.shard(1, 2);
+            while (shard.hasNext())
+                shard.next();
+            GrayCombinationCursor grayCursor = combiner.grayCursor();
+            while (grayCursor.next()) ;
+            CombinationRecord record = combiner.newRecord();
+            while (combiner.getNextAsRecord(record)) ;
+            combiner.evaluateAll(combination -> 1, result -> {
+            });
+            assert metrics.getDecodedCnt() == 1000 + 500 + 1000 + 999 + 1000;
+        } finally {
+            metrics.unregister();
+        }
+    }
+
+    @Test
+    public void testBetaClosedForm() {
+        BetaCombiner combiner = new BetaCombiner(Range.of(0, 40, true), Range.of('A', 'D', true));
+        // каждое из 40 значений главного диапазона отсутствует или берётся с одним из 4 значений
+        assert combiner.getCombinationCnt().equals(BigInteger.valueOf(5).pow(40).subtract(BigInteger.ONE));
+        BigInteger step = combiner.getCombinationCnt().divide(BigInteger.valueOf(1000));
+        for (BigInteger i = BigInteger.ZERO; i.compareTo(combiner.getCombinationCnt()) < 0; i = i.add(step))
+            assert combiner.betaConv(combiner.betaDeconv(i)).equals(i);
+        assert combiner.betaDeconv(BigInteger.ZERO).isEmpty();
+
+        // у дополнительного диапазона из трёх значений основание 4, лишних значений нет
+        BetaCombiner threeAux = new BetaCombiner(Range.of(0, 3, true), Range.of('A', 'C', true));
+        assert threeAux.getCombinationCnt().equals(BigInteger.valueOf(4 * 4 * 4 - 1));
+        testBetaCombiner(threeAux);
+        assert threeAux.betaDeconv(BigInteger.valueOf(3)).equals(List.of(List.of(0, 'C')));
+        assert threeAux.betaDeconv(BigInteger.valueOf(4)).equals(List.of(List.of(1, 'A')));
+        assert threeAux.betaConv(List.of(List.of(0, 'D'))).equals(BigInteger.valueOf(-1));
+        assert threeAux.betaConv(List.of(List.of(0, 'A'), List.of(0, 'B'))).equals(BigInteger.valueOf(-1));
+        // набор, не входящий в перебор
+        assert threeAux.betaConv(List.of(List.of(0, 'C'), List.of(1, 'C'), List.of(2, 'C')))
+                .equals(BigInteger.valueOf(-1));
+    }
+
     private void testBetaCombiner(BetaCombiner combiner) {
         for (BigInteger i = BigInteger.ZERO; i.compareTo(combiner.getCombinationCnt()) < 0; i = i.add(BigInteger.ONE)) {
             List<List<?>> decoved = combiner.betaDeconv(i);
@@ -116,6 +230,126 @@ public class TestCombiner {
     }
 
 
+    @Test
+    public void testGammaConvBatch() {
+        GammaCombiner combiner = new GammaCombiner(
+                new CharRange('A', 'C', null, null, true, false),
+                new IntRange(2, 4, null, null, true, true)
+        );
+        List<List<List<?>>> sets = new ArrayList<>();
+        for (int i = combiner.getCombinationCnt().intValue() - 1; i >= 0; i--) {
+            List<List<?>> set = combiner.gammaDeconv(BigInteger.valueOf(i));
+            // таблица отсортирована по значениям наборов
+            if (i > 0)
+                assert combiner.alphaConv(combiner.gammaDeconv(BigInteger.valueOf(i - 1))).compareTo(combiner.alphaConv(set)) < 0;
+            sets.add(set);
+        }
+        List<List<?>> repeated = Arrays.asList(Arrays.asList('A', 2), Arrays.asList('A', 3));
+        sets.add(repeated);
+        assert combiner.gammaConv(repeated).equals(BigInteger.valueOf(-1));
+        List<BigInteger> numbers = combiner.gammaConvBatch(sets);
+        for (int i = 0; i < sets.size() - 1; i++)
+            assert numbers.get(i).equals(combiner.getCombinationCnt().subtract(BigInteger.valueOf(i + 1)));
+        assert numbers.get(sets.size() - 1).equals(BigInteger.valueOf(-1));
+    }
+
+    @Test
+    public void testGammaCombinatorial() {
+        // диапазоны разного размера: значения диапазонов в комбинациях таблицы считаются по их разрядам
+        Range[] ranges = {
+                new CharRange('A', 'C', null, null, true, false),
+                new IntRange(2, 3, null, null, true, true),
+                new IntRange(-2, -1, null, null, true, false)
+        };
+        GammaCombiner table = new GammaCombiner(ranges);
+        GammaCombiner combinatorial = new GammaCombiner(true, ranges);
+        assert combinatorial.getCombinationCnt().equals(table.getCombinationCnt());
+        testGammaCombiner(combinatorial);
+        // те же наборы, что и в таблице, но в другом порядке
+        HashSet<BigInteger> tableSets = new HashSet<>();
+        HashSet<BigInteger> combinatorialSets = new HashSet<>();
+        for (BigInteger i = BigInteger.ZERO; i.compareTo(table.getCombinationCnt()) < 0; i = i.add(BigInteger.ONE)) {
+            tableSets.add(table.alphaConv(table.gammaDeconv(i)));
+            combinatorialSets.add(combinatorial.alphaConv(combinatorial.gammaDeconv(i)));
+        }
+        assert tableSets.equals(combinatorialSets);
+        // последняя комбинация диапазонов не перебирается
+        assert combinatorial.gammaConv(Arrays.asList(Arrays.asList('C', 3, -1))).equals(BigInteger.valueOf(-1));
+        // значения вне диапазонов: таких наборов нет ни в таблице, ни в комбинаторном режиме
+        for (List<?> combination : Arrays.asList(Arrays.asList('A', 2, 7), Arrays.asList('A', 5, -1))) {
+            assert table.gammaConv(Arrays.asList(combination)).equals(BigInteger.valueOf(-1));
+            assert combinatorial.gammaConv(Arrays.asList(combination)).equals(BigInteger.valueOf(-1));
+        }
+
+        // пространство, которое нельзя сохранить в таблице
+        GammaCombiner big = new GammaCombiner(
+                true,
+                new IntRange(0, 40, null, null, true, false),
+                new CharRange('A', 'J', null, null, true, true),
+                new IntRange(0, 30, null, null, true, false)
+        );
+        assert big.getCombinationCnt().bitLength() > 200;
+        BigInteger step = big.getCombinationCnt().divide(BigInteger.valueOf(500));
+        for (BigInteger i = BigInteger.ZERO; i.compareTo(big.getCombinationCnt()) < 0; i = i.add(step))
+            assert big.gammaConv(big.gammaDeconv(i)).equals(i);
+        BigInteger last = big.getCombinationCnt().subtract(BigInteger.ONE);
+        assert big.gammaConv(big.gammaDeconv(last)).equals(last);
+    }
+
+    @Test
+    public void testCombinationSetStream() {
+        Range[] ranges = {
+                new CharRange('A', 'C', null, null, true, false),
+                new IntRange(2, 4, null, null, true, true),
+                new IntRange(-3, -1, null, null, true, false)
+        };
+        GammaCombiner combiner = new GammaCombiner(ranges);
+        // таблица строится тем же поиском в глубину, а кол-во наборов совпадает с комбинаторным режимом
+        assert combiner.getCombinationCnt().equals(new GammaCombiner(true, ranges).getCombinationCnt());
+        List<List<List<?>>> sets = combiner.combinationSetStream(false).collect(Collectors.toList());
+        assert sets.size() == combiner.getCombinationCnt().intValue();
+        for (int i = 0; i < sets.size(); i++)
+            assert sets.get(i).equals(combiner.gammaDeconv(BigInteger.valueOf(i)));
+        assert combiner.combinationSetStream(true).collect(Collectors.toList()).equals(sets);
+
+        // поток в комбинаторном режиме не меняет равенство и хэш-код комбайнера
+        GammaCombiner streamed = new GammaCombiner(true, ranges);
+        GammaCombiner fresh = new GammaCombiner(true, ranges);
+        int hash = streamed.hashCode();
+        assert streamed.combinationSetStream(false).count() == sets.size();
+        assert streamed.hashCode() == hash && streamed.equals(fresh);
+
+        FixedSizeCombiner fixedSize = new FixedSizeCombiner(2, ranges);
+        List<List<List<?>>> fixedSizeSets = fixedSize.combinationSetStream(true).collect(Collectors.toList());
+        assert fixedSizeSets.size() == fixedSize.getCombinationCnt().intValue();
+        assert fixedSizeSets.stream().allMatch(set -> set.size() == 2);
+        assert fixedSizeSets.get(fixedSizeSets.size() - 1).equals(fixedSize.gammaDeconv(
+                fixedSize.getCombinationCnt().subtract(BigInteger.ONE)));
+    }
+
+    @Test
+    public void testCheckCombination() {
+        Range[] ranges = {
+                new CharRange('A', 'C', null, null, true, false),
+                new IntRange(2, 3, null, null, true, true),
+                new IntRange(-2, -1, null, null, true, false)
+        };
+        var combiner = new GammaCombiner(ranges) {
+            @Override
+            protected boolean checkCombination(BigInteger combinationNumber) {
+                return super.checkCombination(combinationNumber);
+            }
+        };
+        // проверка всех чисел наборов отбирает те же наборы, что строит поиск в глубину
+        int cnt = 0;
+        for (int i = 0; i < 1 << 11; i++)
+            if (combiner.checkCombination(BigInteger.valueOf(i))) {
+                assert combiner.gammaConv(combiner.alphaDeconv(BigInteger.valueOf(i))).equals(BigInteger.valueOf(cnt));
+                cnt++;
+            }
+        assert cnt == combiner.getCombinationCnt().intValue();
+    }
+
     private void testGammaCombiner(GammaCombiner combiner) {
         for (BigInteger i = BigInteger.ZERO; i.compareTo(combiner.getCombinationCnt()) < 0; i = i.add(BigInteger.ONE)) {
             List<List<?>> decoved = combiner.gammaDeconv(i);
@@ -172,6 +406,79 @@ public class TestCombiner {
 
     }
 
+    @Test
+    public void testFixedSizeCombinatorial() {
+        Range[] ranges = {
+                new CharRange('A', 'C', null, null, true, true),
+                new IntRange(2, 4, null, null, true, false),
+                new IntRange(-2, -1, null, null, true, false)
+        };
+        FixedSizeCombiner table = new FixedSizeCombiner(2, ranges);
+        FixedSizeCombiner combinatorial = new FixedSizeCombiner(2, true, ranges);
+        assert combinatorial.getCombinationCnt().equals(table.getCombinationCnt());
+        testFixedSizeGammaCombiner(combinatorial);
+        HashSet<BigInteger> tableSets = new HashSet<>();
+        HashSet<BigInteger> combinatorialSets = new HashSet<>();
+        for (BigInteger i = BigInteger.ZERO; i.compareTo(table.getCombinationCnt()) < 0; i = i.add(BigInteger.ONE)) {
+            tableSets.add(table.alphaConv(table.gammaDeconv(i)));
+            combinatorialSets.add(combinatorial.alphaConv(combinatorial.gammaDeconv(i)));
+        }
+        assert tableSets.equals(combinatorialSets);
+        // набор другого размера не перебирается
+        Range[] pairRanges = {
+                new IntRange(2, 4, null, null, true, false),
+                new IntRange(-3, -1, null, null, true, true)
+        };
+        List<List<?>> threeSet = Arrays.asList(Arrays.asList(2, -1), Arrays.asList(3, -1), Arrays.asList(4, -2));
+        assert new FixedSizeCombiner(2, pairRanges).gammaConv(threeSet).equals(BigInteger.valueOf(-1));
+        assert new FixedSizeCombiner(2, true, pairRanges).gammaConv(threeSet).equals(BigInteger.valueOf(-1));
+
+        // без диапазонов с неповторяемыми значениями номера совпадают с таблицей
+        Range[] repeatable = {new IntRange(0, 40, null, null, true, true)};
+        FixedSizeCombiner tableSubsets = new FixedSizeCombiner(3, repeatable);
+        FixedSizeCombiner subsets = new FixedSizeCombiner(3, true, repeatable);
+        assert subsets.getCombinationCnt().equals(BigInteger.valueOf(40 * 39 * 38 / 6));
+        for (BigInteger i = BigInteger.ZERO; i.compareTo(subsets.getCombinationCnt()) < 0; i = i.add(BigInteger.ONE)) {
+            assert subsets.gammaDeconv(i).equals(tableSubsets.gammaDeconv(i));
+            assert subsets.gammaConv(tableSubsets.gammaDeconv(i)).equals(i);
+        }
+
+        // миллион комбинаций: таблицу не построить, а номера считаются сразу
+        FixedSizeCombiner big = new FixedSizeCombiner(3, true,
+                new IntRange(0, 99, null, null, true, true),
+                new IntRange(0, 99, null, null, true, true),
+                new IntRange(0, 99, null, null, true, true)
+        );
+        assert big.getCombinationCnt().equals(BigInteger.valueOf(999_999L * 999_998L * 999_997L / 6));
+        BigInteger step = big.getCombinationCnt().divide(BigInteger.valueOf(1000));
+        for (BigInteger i = BigInteger.ZERO; i.compareTo(big.getCombinationCnt()) < 0; i = i.add(step))
+            assert big.gammaConv(big.gammaDeconv(i)).equals(i);
+    }
+
+    @Test
+    public void testOffHeapTable() {
+        Range[] ranges = {
+                new IntRange(0, 9, null, null, true, false),
+                new IntRange(0, 9, null, null, true, false)
+        };
+        FixedSizeCombiner heap = new FixedSizeCombiner(2, ranges);
+        FixedSizeCombiner offHeap = new FixedSizeCombiner(2, TableStorage.OFF_HEAP, ranges);
+        assert heap.getTableStorage() == TableStorage.HEAP;
+        assert offHeap.getTableStorage() == TableStorage.OFF_HEAP;
+        // больше 1024 наборов из 99 комбинаций: кусок таблицы растёт, а записи занимают по два слова
+        assert offHeap.getCombinationCnt().compareTo(BigInteger.valueOf(1024)) > 0;
+        assert offHeap.getCombinationCnt().equals(heap.getCombinationCnt());
+        List<List<List<?>>> sets = new ArrayList<>();
+        for (BigInteger i = BigInteger.ZERO; i.compareTo(heap.getCombinationCnt()) < 0; i = i.add(BigInteger.ONE)) {
+            assert offHeap.gammaDeconv(i).equals(heap.gammaDeconv(i));
+            assert offHeap.gammaConv(heap.gammaDeconv(i)).equals(i);
+            sets.add(heap.gammaDeconv(i));
+        }
+        assert offHeap.gammaConvBatch(sets).equals(heap.gammaConvBatch(sets));
+        assert offHeap.equals(heap);
+        assert offHeap.gammaConv(Arrays.asList(Arrays.asList(1, 1), Arrays.asList(1, 2))).equals(BigInteger.valueOf(-1));
+    }
+
     private void testFixedSizeGammaCombiner(FixedSizeCombiner combiner) {
         for (BigInteger i = BigInteger.ZERO; i.compareTo(combiner.getCombinationCnt()) < 0; i = i.add(BigInteger.ONE)) {
             List<List<?>> decoved = combiner.gammaDeconv(i);
@@ -211,6 +518,38 @@ public class TestCombiner {
 
     }
 
+    @Test
+    public void testForEachArithmetic() {
+        ForEachCombiner combiner = new ForEachCombiner(true,
+                new CharRange('A', 'C', null, null, true, true),
+                new IntRange(-3, -1, null, null, true, true),
+                new IntRange(2, 4, null, null, true, false)
+        );
+        // два значения главного диапазона: 3^2 для повторяемого диапазона и 3 * 2 для неповторяемого
+        assert combiner.getCombinationCnt().equals(BigInteger.valueOf(54));
+        testForEachCombiner(combiner);
+        assert combiner.combinationSetStream(false).count() == 54;
+        assert combiner.gammaConv(Arrays.asList(
+                Arrays.asList('A', -3, 2),
+                Arrays.asList('B', -1, 2)
+        )).equals(BigInteger.valueOf(-1));
+        // значение вне повторяемого диапазона
+        assert combiner.gammaConv(Arrays.asList(
+                Arrays.asList('A', 5, 2),
+                Arrays.asList('B', -3, 3)
+        )).equals(BigInteger.valueOf(-1));
+
+        // большие диапазоны: номера считаются без таблицы
+        ForEachCombiner big = new ForEachCombiner(true,
+                new IntRange(0, 20, null, null, true, true),
+                new IntRange(0, 99, null, null, true, false),
+                new IntRange(0, 99, null, null, true, true)
+        );
+        BigInteger step = big.getCombinationCnt().divide(BigInteger.valueOf(1000));
+        for (BigInteger i = BigInteger.ZERO; i.compareTo(big.getCombinationCnt()) < 0; i = i.add(step))
+            assert big.gammaConv(big.gammaDeconv(i)).equals(i);
+    }
+
     private void testForEachCombiner(ForEachCombiner combiner) {
         for (BigInteger i = BigInteger.ZERO; i.compareTo(combiner.getCombinationCnt()) < 0; i = i.add(BigInteger.ONE)) {
             List<List<?>> decoved = combiner.gammaDeconv(i);
@@ -1,5 +1,17 @@
+import center.buran.jcollections.combiners.CombinationBatch;
+import center.buran.jcollections.combiners.CombinationChunk;
+import center.buran.jcollections.combiners.CombinationChunkClaimer;
+import center.buran.jcollections.combiners.CombinationCursor;
+import center.buran.jcollections.combiners.CombinationRecord;
 import center.buran.jcollections.combiners.Combiner;
+import center.buran.jcollections.combiners.ConstrainedCombiner;
+import center.buran.jcollections.combiners.EvaluationOptions;
+import center.buran.jcollections.combiners.GrayCombinationCursor;
+import center.buran.jcollections.combiners.IndexPermutation;
+import center.buran.jcollections.combiners.ProgressJournal;
+import center.buran.jcollections.combiners.ShardMode;
 import center.buran.jcollections.combiners.ranges.Range;
+import center.buran.jcollections.combiners.ranges.RangeBuilder;
 import center.buran.jcollections.combiners.ranges.complex.CombinerRange;
 import center.buran.jcollections.combiners.ranges.complex.ListRange;
 import center.buran.jcollections.combiners.ranges.primitive.DoubleRange;
@@ -9,10 +21,27 @@ import center.buran.jmath.vector.Vector2i;
 import center.buran.jmath.vector.Vector3d;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.Collectors;
 
 public class TestRanges {
 
@@ -84,6 +113,477 @@ public class TestRanges {
         }
     }
 
+    @Test
+    public void testLongConv() {
+        Combiner combiner = new Combiner(
+                Range.of(0, 100, 20),
+                Range.of(-15.0, 20.0, 5),
+                Range.of('A', 'Z', 5)
+        );
+        assert combiner.isLongConv();
+        for (long i = 0; i < combiner.getCombinationCnt().longValue(); i++) {
+            List<Object> decoved = combiner.deconv(i);
+            assert decoved.equals(combiner.deconv(BigInteger.valueOf(i)));
+            assert combiner.convToLong(decoved) == i;
+        }
+    }
+
+    @Test
+    public void testBigConv() {
+        Combiner combiner = new Combiner(30);
+        for (int i = 0; i < 30; i++)
+            combiner.setRange(i, Range.of(0, 10));
+        assert !combiner.isLongConv();
+        BigInteger step = combiner.getCombinationCnt().divide(BigInteger.valueOf(1000));
+        for (BigInteger i = BigInteger.ZERO; i.compareTo(combiner.getCombinationCnt()) < 0; i = i.add(step)) {
+            List<Object> decoved = combiner.deconv(i);
+            assert combiner.conv(decoved).equals(i);
+        }
+    }
+
+    @Test
+    public void testDivideAndConquerConv() {
+        Combiner combiner = new Combiner(200);
+        for (int i = 0; i < 200; i++)
+            combiner.setRange(i, Range.of(0, 3 + i % 7));
+        BigInteger step = combiner.getCombinationCnt().divide(BigInteger.valueOf(997));
+        for (BigInteger i = BigInteger.ZERO; i.compareTo(combiner.getCombinationCnt()) < 0; i = i.add(step)) {
+            List<Object> decoved = combiner.deconv(i);
+            BigInteger value = i;
+            for (int j = 0; j < 200; j++) {
+                BigInteger[] qr = value.divideAndRemainder(BigInteger.valueOf(4 + j % 7));
+                assert decoved.get(j).equals(qr[1].intValue());
+                value = qr[0];
+            }
+            assert combiner.conv(decoved).equals(i);
+        }
+    }
+
+    @Test
+    public void testCursor() {
+        Combiner combiner = new Combiner(
+                Range.of(0, 100, 20),
+                Range.of(-15.0, 20.0, 5),
+                Range.of('B', 'C', false),
+                Range.of(5L, 1005L, 15),
+                new Vector3dRange(new Vector3d(1, 2, 3), new Vector3d(4, 5, 7), 5)
+        );
+        CombinationCursor cursor = combiner.cursor();
+        long i = 0;
+        while (cursor.next()) {
+            List<Object> decoved = combiner.deconv(i);
+            assert cursor.toList().equals(decoved);
+            assert cursor.getInt(0) == (int) decoved.get(0);
+            assert cursor.getDouble(1) == (double) decoved.get(1);
+            assert cursor.getChar(2) == (char) decoved.get(2);
+            assert cursor.getLong(3) == (long) decoved.get(3);
+            assert cursor.getPosition().longValue() == i;
+            i++;
+        }
+        assert i == combiner.getCombinationCnt().longValue();
+
+        cursor = combiner.cursor(BigInteger.valueOf(100), BigInteger.valueOf(50));
+        for (i = 100; cursor.next(); i++)
+            assert cursor.toList().equals(combiner.deconv(i));
+        assert i == 150;
+        assert !combiner.cursor(combiner.getCombinationCnt(), BigInteger.TEN).next();
+        try {
+            combiner.cursor(BigInteger.valueOf(-5), BigInteger.TEN);
+            assert false;
+        } catch (AssertionError e) {
+            assert e.getMessage().startsWith("cursor(): from -5");
+        }
+        try {
+            combiner.deconvBatch(combiner.getCombinationCnt().add(BigInteger.ONE), 10);
+            assert false;
+        } catch (AssertionError e) {
+            assert e.getMessage().startsWith("cursor(): from");
+        }
+    }
+
+    @Test
+    public void testDeconvBatch() {
+        Combiner combiner = new Combiner(
+                Range.of(0, 100, 20),
+                Range.of(-15.0, 20.0, 5),
+                Range.of('B', 'C', false),
+                Range.of(5L, 1005L, 15),
+                Range.of(new Vector2i(1, 2), new Vector2i(4, 5)),
+                new Vector3dRange(new Vector3d(1, 2, 3), new Vector3d(4, 5, 7), 5)
+        );
+        BigInteger start = BigInteger.valueOf(37);
+        CombinationBatch batch = combiner.deconvBatch(start, 1000);
+        assert batch.getSize() == 1000;
+        for (int row = 0; row < batch.getSize(); row++) {
+            List<Object> decoved = combiner.deconv(start.add(BigInteger.valueOf(row)));
+            assert batch.getInts(0)[row] == (int) decoved.get(0);
+            assert batch.getDoubles(1)[row] == (double) decoved.get(1);
+            assert batch.getChars(2)[row] == (char) decoved.get(2);
+            assert batch.getLongs(3)[row] == (long) decoved.get(3);
+            Vector2i vector2i = (Vector2i) decoved.get(4);
+            assert batch.getVector2iCoords(4)[2 * row] == vector2i.x;
+            assert batch.getVector2iCoords(4)[2 * row + 1] == vector2i.y;
+            Vector3d vector3d = (Vector3d) decoved.get(5);
+            assert batch.getVector3dCoords(5)[3 * row + 2] == vector3d.z;
+        }
+        BigInteger last = combiner.getCombinationCnt().subtract(BigInteger.TEN);
+        assert combiner.deconvBatch(last, 1000).getSize() == 10;
+    }
+
+    @Test
+    public void testConstrainedCombiner() {
+        ConstrainedCombiner combiner = new ConstrainedCombiner(
+                Range.of(0, 9),
+                Range.of(0, 9),
+                Range.of(0, 4),
+                Range.of('B', 'C', false)
+        );
+        combiner.addConstraint(values -> (int) values.get(1) > (int) values.get(0), 0, 1)
+                .addRangeConstraint(2, value -> (int) value % 2 == 0);
+        List<List<Object>> expected = new ArrayList<>();
+        for (long i = 0; i < combiner.getCombinationCnt().longValue(); i++) {
+            List<Object> decoved = combiner.deconv(i);
+            if ((int) decoved.get(1) > (int) decoved.get(0) && (int) decoved.get(2) % 2 == 0)
+                expected.add(decoved);
+        }
+        assert combiner.stream().collect(Collectors.toList()).equals(expected);
+        assert combiner.getValidCombinationCnt().equals(BigInteger.valueOf(expected.size()));
+        assert combiner.getValidCombinationCnt().intValue() == 45 * 3;
+        combiner.addRangeConstraint(3, value -> (char) value == 'C');
+        assert combiner.getValidCombinationCnt().signum() == 0;
+        assert !combiner.iterator().hasNext();
+    }
+
+    @Test
+    public void testStream() {
+        Combiner combiner = new Combiner(
+                Range.of(0, 100, 20),
+                Range.of(-15.0, 20.0, 5),
+                Range.of('A', 'Z', 5)
+        );
+        List<List<Object>> combinations = combiner.parallelStream().collect(Collectors.toList());
+        assert combinations.size() == combiner.getCombinationCnt().intValue();
+        for (int i = 0; i < combinations.size(); i++)
+            assert combiner.conv(combinations.get(i)).intValue() == i;
+        assert combiner.stream().skip(7).findFirst().orElseThrow().equals(combiner.deconv(7L));
+    }
+
+    @Test
+    public void testProgressJournal() throws IOException {
+        Combiner combiner = new Combiner(Range.of(0, 99), Range.of(0, 9));
+        Path file = Files.createTempFile("journal", ".bin");
+        try {
+            try (ProgressJournal journal = new ProgressJournal(file, 16)) {
+                journal.markDone(0, 100);
+                journal.markDone(300, 400);
+                journal.markDone(100, 150);
+                journal.markDone(500, 600);
+                journal.markDone(390, 450);
+            }
+            try (ProgressJournal journal = new ProgressJournal(file, 16)) {
+                assert journal.getDoneCnt() == 150 + 150 + 100;
+                assert journal.getIntervals().size() == 3;
+                assert journal.isDone(149) && !journal.isDone(150) && journal.isDone(449);
+                journal.resume(combiner);
+                assert combiner.getCombinationLoopPos().longValue() == 150;
+                List<CombinationChunk> remaining = journal.remaining(combiner.claimChunk(450));
+                assert remaining.size() == 2;
+                assert remaining.get(0).getStart().longValue() == 150 && remaining.get(0).getSize() == 150;
+                assert remaining.get(1).getStart().longValue() == 450 && remaining.get(1).getSize() == 50;
+                for (CombinationChunk chunk : remaining)
+                    journal.markDone(chunk);
+                assert journal.getIntervals().size() == 1;
+            }
+            // портим последнюю (седьмую) запись лога: должно остаться состояние до неё
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3}), 4 * Integer.BYTES + 2 * (Long.BYTES + Integer.BYTES + Long.BYTES + 16 * 16) + 6 * 32 + 20);
+            }
+            try (ProgressJournal journal = new ProgressJournal(file, 16)) {
+                assert journal.getIntervals().size() == 2;
+                assert journal.getDoneCnt() == 600 - 50;
+            }
+            // размеры существующего журнала берутся из файла
+            try (ProgressJournal journal = new ProgressJournal(file, 32, 8)) {
+                assert journal.getCapacity() == 16 && journal.getLogCapacity() == ProgressJournal.DEFAULT_LOG_CAPACITY;
+                assert journal.getDoneCnt() == 600 - 50;
+            }
+            Files.write(file, new byte[]{1, 2, 3, 4, 5});
+            try {
+                new ProgressJournal(file, 16).close();
+                assert false;
+            } catch (IOException e) {
+                assert e.getMessage().endsWith("is not a progress journal");
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testProgressJournalCompaction() throws IOException {
+        Combiner combiner = new Combiner(Range.of(0, 9), Range.of(0, 9));
+        Path file = Files.createTempFile("journal", ".bin");
+        try {
+            // лог из трёх записей: снимок пишется несколько раз
+            try (ProgressJournal journal = new ProgressJournal(file, 4, 3)) {
+                for (int i = 0; i < 10; i++) {
+                    journal.markDone(10 * i + 5, 10 * i + 10);
+                    journal.markDone(10 * i, 10 * i + 5);
+                }
+                assert journal.getIntervals().size() == 1;
+            }
+            try (ProgressJournal journal = new ProgressJournal(file, 4, 3)) {
+                assert journal.getDoneCnt() == 100;
+                // все комбинации выполнены: перебор переводится в конец
+                assert !journal.resume(combiner);
+                assert combiner.claimChunk(10) == null;
+                // переполнение не меняет состояние
+                journal.markDone(200, 201);
+                journal.markDone(300, 301);
+                journal.markDone(400, 401);
+                try {
+                    journal.markDone(500, 501);
+                    assert false;
+                } catch (AssertionError e) {
+                    assert e.getMessage().startsWith("progress journal overflow");
+                }
+                assert journal.getIntervals().size() == 4 && !journal.isDone(500);
+                journal.markDone(100, 200);
+            }
+            try (ProgressJournal journal = new ProgressJournal(file, 4, 3)) {
+                assert journal.getIntervals().size() == 3;
+                assert journal.getDoneCnt() == 203;
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testShard() {
+        Combiner combiner = new Combiner(
+                Range.of(0, 6),
+                Range.of(-15.0, 20.0, 4),
+                Range.of('B', 'C', false),
+                Range.of(5L, 1005L, 10)
+        );
+        int shardCount = 5;
+        for (ShardMode mode : ShardMode.values()) {
+            List<List<Object>> all = new ArrayList<>();
+            for (int i = 0; i < shardCount; i++) {
+                Iterator<List<Object>> shard = combiner.shard(i, shardCount, mode);
+                long pos = mode == ShardMode.CONTIGUOUS ?
+                        combiner.getCombinationCnt().longValue() * i / shardCount : i;
+                while (shard.hasNext()) {
+                    List<Object> combination = shard.next();
+                    assert combination.equals(combiner.deconv(pos));
+                    pos += mode == ShardMode.CONTIGUOUS ? 1 : shardCount;
+                    all.add(combination);
+                }
+            }
+            assert all.size() == combiner.getCombinationCnt().intValue();
+            assert new HashSet<>(all).size() == all.size();
+        }
+    }
+
+    @Test
+    public void testEvaluateAll() {
+        Combiner combiner = new Combiner(Range.of(0, 99), Range.of(0, 9));
+        List<Integer> results = new ArrayList<>();
+        assert combiner.evaluateAll(combination -> (int) combination.get(0) * 10 + (int) combination.get(1),
+                results::add, new EvaluationOptions().maxInFlight(8));
+        assert results.size() == 1000;
+        assert new HashSet<>(results).size() == 1000;
+
+        List<Integer> cancelled = new ArrayList<>();
+        assert !combiner.evaluateAll(combination -> 1, cancelled::add,
+                new EvaluationOptions().maxInFlight(4).cancelled(() -> cancelled.size() >= 10));
+        assert cancelled.size() < 1000;
+
+        assert !combiner.evaluateAll(combination -> {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 1;
+        }, result -> {
+        }, new EvaluationOptions().maxInFlight(2).timeout(Duration.ofMillis(50)));
+
+        // исполнитель вызывающего: по истечении времени задачи в его очереди отменяются, ожидание не дольше времени
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            AtomicInteger evaluated = new AtomicInteger();
+            long start = System.nanoTime();
+            assert !combiner.evaluateAll(combination -> {
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return evaluated.incrementAndGet();
+            }, result -> {
+                assert false;
+            }, new EvaluationOptions().maxInFlight(8).timeout(Duration.ofMillis(100)).executor(executor));
+            assert System.nanoTime() - start < 5_000_000_000L;
+            executor.shutdown();
+            assert executor.awaitTermination(5, TimeUnit.SECONDS);
+            assert evaluated.get() <= 1;
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        try {
+            combiner.evaluateAll(combination -> {
+                throw new IllegalStateException("test");
+            }, result -> {
+            });
+            assert false;
+        } catch (IllegalStateException e) {
+            assert e.getMessage().equals("test");
+        }
+
+        // проверяемое исключение, выброшенное в обход компилятора, пробрасывается обёрнутым
+        try {
+            combiner.evaluateAll(combination -> sneakyThrow(new IOException("test")), result -> {
+            });
+            assert false;
+        } catch (CompletionException e) {
+            assert e.getCause() instanceof IOException && e.getCause().getMessage().equals("test");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Throwable, R> R sneakyThrow(Throwable t) throws T {
+        throw (T) t;
+    }
+
+    @Test
+    public void testCombinationRecord() {
+        Combiner combiner = new Combiner(
+                new RangeBuilder("a").setMinMax(0, 9).build(),
+                new RangeBuilder("b").setMinMax(-1.0, 1.0).setStepCnt(4).build()
+        );
+        Combiner reference = new Combiner(combiner);
+        CombinationRecord record = combiner.newRecord();
+        int aIdx = record.indexOf("a");
+        int cnt = 0;
+        while (combiner.getNextAsRecord(record)) {
+            Map<String, Object> expected = reference.getNextAsDict();
+            assert record.toMap().equals(expected);
+            assert record.get(aIdx).equals(expected.get("a"));
+            assert record.get("b").equals(expected.get("b"));
+            assert record.getPosition().equals(BigInteger.valueOf(cnt));
+            cnt++;
+        }
+        assert cnt == 50;
+    }
+
+    @Test
+    public void testGrayCursor() {
+        Combiner combiner = new Combiner(
+                Range.of(0, 100, 20),
+                Range.of(45, 150, false),
+                Range.of(-15.0, 20.0, 5),
+                Range.of('A', 'Z', 5)
+        );
+        int cnt = combiner.getCombinationCnt().intValue();
+        boolean[] visited = new boolean[cnt];
+        GrayCombinationCursor cursor = combiner.grayCursor();
+        int[] prevStepNums = null;
+        int visitedCnt = 0;
+        while (cursor.next()) {
+            int pos = cursor.getPosition().intValue();
+            assert !visited[pos];
+            visited[pos] = true;
+            visitedCnt++;
+            assert cursor.toList().equals(combiner.deconv(pos));
+            int[] stepNums = new int[cursor.getRangeCnt()];
+            for (int i = 0; i < stepNums.length; i++)
+                stepNums[i] = cursor.getStepNum(i);
+            if (prevStepNums != null) {
+                for (int i = 0; i < stepNums.length; i++) {
+                    if (i == cursor.getChangedRangeIdx())
+                        assert stepNums[i] - prevStepNums[i] == cursor.getChangeDirection();
+                    else
+                        assert stepNums[i] == prevStepNums[i];
+                }
+            }
+            prevStepNums = stepNums;
+        }
+        assert visitedCnt == cnt;
+    }
+
+    @Test
+    public void testIndexPermutation() {
+        for (long size : new long[]{1, 2, 7, 1000, 4097}) {
+            IndexPermutation permutation = new IndexPermutation(BigInteger.valueOf(size), size);
+            boolean[] found = new boolean[(int) size];
+            for (long i = 0; i < size; i++) {
+                long value = permutation.permute(i);
+                assert !found[(int) value];
+                found[(int) value] = true;
+                assert permutation.permute(BigInteger.valueOf(i)).longValue() == value;
+            }
+        }
+        BigInteger bigSize = BigInteger.TEN.pow(30).add(BigInteger.valueOf(7));
+        IndexPermutation permutation = new IndexPermutation(bigSize, 42);
+        HashSet<BigInteger> values = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            BigInteger value = permutation.permute(BigInteger.valueOf(i));
+            assert value.signum() >= 0 && value.compareTo(bigSize) < 0;
+            assert values.add(value);
+        }
+    }
+
+    @Test
+    public void testShuffledStream() {
+        Combiner combiner = new Combiner(
+                Range.of(0, 100, 20),
+                Range.of(-15.0, 20.0, 5),
+                Range.of('A', 'Z', 5)
+        );
+        List<BigInteger> numbers = combiner.shuffledStream(1).parallel()
+                .map(combiner::conv).collect(Collectors.toList());
+        assert numbers.size() == combiner.getCombinationCnt().intValue();
+        assert new HashSet<>(numbers).size() == numbers.size();
+        assert !numbers.equals(combiner.stream().map(combiner::conv).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testClaimChunks() throws InterruptedException {
+        Combiner combiner = new Combiner(
+                Range.of(0, 100, 20),
+                Range.of(-15.0, 20.0, 5),
+                Range.of('A', 'Z', 5)
+        );
+        int cnt = combiner.getCombinationCnt().intValue();
+        AtomicIntegerArray visits = new AtomicIntegerArray(cnt);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                CombinationChunkClaimer claimer = combiner.chunkClaimer();
+                CombinationChunk chunk;
+                while ((chunk = claimer.claim()) != null)
+                    chunk.forEach(combination -> visits.incrementAndGet(combiner.conv(combination).intValue()));
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        for (int i = 0; i < cnt; i++)
+            assert visits.get(i) == 1;
+        assert combiner.getCombinationLoopPos().intValue() == cnt;
+        assert combiner.getNextAsList().isEmpty();
+
+        combiner.setCombinationLoopPos(BigInteger.valueOf(5));
+        List<Object> next = combiner.getNextAsList();
+        assert next.get(next.size() - 1).equals(BigInteger.valueOf(5));
+        assert combiner.getCombinationLoopPos().intValue() == 6;
+    }
+
     @Test
     public void testCombinerRange() {
         Combiner combiner = new Combiner(2);